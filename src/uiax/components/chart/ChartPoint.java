@@ -0,0 +1,56 @@
+package uiax.components.chart;
+
+/**
+ * ChartPoint identifies a point of a {@link DrawableDistribution} plotted on a chart.
+ */
+
+public final class ChartPoint {
+    private final DrawableDistribution distribution;
+    private final int index;
+    private final float x;
+    private final float y;
+
+    public ChartPoint(DrawableDistribution distribution, int index, float x, float y) {
+        this.distribution = distribution;
+        this.index = index;
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public String toString() {
+        return "ChartPoint{index=" + index + ", x=" + x + ", y=" + y + '}';
+    }
+
+    /**
+     * @return the distribution the point belongs to
+     */
+
+    public DrawableDistribution getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * @return the point's index in its distribution
+     */
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the point's value on x-axis
+     */
+
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * @return the point's value on y-axis
+     */
+
+    public float getY() {
+        return y;
+    }
+}
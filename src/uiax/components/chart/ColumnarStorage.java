@@ -0,0 +1,114 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * ColumnarStorage stores bi-dimensional points as two parallel arrays of float (structure of arrays).
+ * <br>
+ * Unlike a list of {@code float[2]}, it doesn't allocate an object for each point: the x-values and the y-values
+ * are kept in two primitive columns that grow geometrically, by half of their capacity at a time.
+ * <br>
+ * Time required to append a point: amortized O(1); time required to read a point: O(1).
+ */
+
+public final class ColumnarStorage extends PointStorage {
+    private static final int INIT_CAPACITY = 16;
+
+    private float[] xs;
+    private float[] ys;
+    private int size;
+
+    public ColumnarStorage() {
+        xs = new float[INIT_CAPACITY];
+        ys = new float[INIT_CAPACITY];
+    }
+
+    /**
+     * Makes sure that the columns can hold at least the specified amount of points.
+     *
+     * @param minCapacity the minimum capacity
+     */
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > xs.length) {
+            int newCapacity = Math.max(minCapacity, xs.length + (xs.length >> 1) + 1);
+            xs = Arrays.copyOf(xs, newCapacity);
+            ys = Arrays.copyOf(ys, newCapacity);
+        }
+    }
+
+    @Override
+    void add(float x, float y) {
+        ensureCapacity(size + 1);
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        statistics.add(x, y);
+    }
+
+    /**
+     * Appends a sequence of points with a single copy for each column.
+     */
+
+    @Override
+    void addAll(float[] x, float[] y, int offset, int length) {
+        checkRange(x, y, offset, length);
+        ensureCapacity(size + length);
+        System.arraycopy(x, offset, xs, size, length);
+        System.arraycopy(y, offset, ys, size, length);
+        size += length;
+        statistics.addAll(x, y, offset, length);
+    }
+
+    @Override
+    void set(int i, float x, float y) {
+        checkIndex(i, size);
+        statistics.remove(xs[i], ys[i]);
+        xs[i] = x;
+        ys[i] = y;
+        statistics.add(x, y);
+    }
+
+    /**
+     * Removes the specified point and shifts the following points to the left.
+     */
+
+    @Override
+    void remove(int i) {
+        checkIndex(i, size);
+        statistics.remove(xs[i], ys[i]);
+        int shift = size - i - 1;
+        if (shift > 0) {
+            System.arraycopy(xs, i + 1, xs, i, shift);
+            System.arraycopy(ys, i + 1, ys, i, shift);
+        }
+        size--;
+    }
+
+    /**
+     * Removes all points. The allocated capacity is retained.
+     */
+
+    @Override
+    void clear() {
+        size = 0;
+        statistics.clear();
+    }
+
+    @Override
+    public float getX(int i) {
+        checkIndex(i, size);
+        return xs[i];
+    }
+
+    @Override
+    public float getY(int i) {
+        checkIndex(i, size);
+        return ys[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
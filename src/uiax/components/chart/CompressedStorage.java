@@ -0,0 +1,513 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * CompressedStorage stores time series in compressed blocks (Gorilla encoding by Pelkonen et al.), so that
+ * long retention periods fit in memory.
+ * <br>
+ * Points are grouped into blocks of up to 512 points, each one encoded on its own as a stream of bits:
+ * <ul>
+ *     <li>values on the x-axis are encoded as delta-of-delta of their bit patterns: regularly spaced values,
+ *     e.g. timestamps sampled at a fixed rate, take 1 bit each;</li>
+ *     <li>values on the y-axis are XOR-ed with the previous value and only the meaningful bits are stored:
+ *     repeated values take 1 bit each, slowly changing values a few bits.</li>
+ * </ul>
+ * Encoding is lossless. The most recent points are kept uncompressed until they fill a block.
+ * <br>
+ * A point is read by decoding its whole block, so a block directory gives random access in O(block size), while
+ * sequential reads are O(1) on average thanks to a small cache of decoded blocks. Blocks are decoded into
+ * preallocated arrays, reused by the following blocks, so reads don't allocate; for the same reason, reads must
+ * not run concurrently and parallel scans read the points serially.
+ * <br>
+ * Replacing or removing a point re-encodes only its block. Removing points from the beginning of the series,
+ * e.g. to apply a retention period, doesn't re-encode the other blocks and keeps the block lookup in O(1).
+ */
+
+public final class CompressedStorage extends PointStorage {
+    private static final int BLOCK_SHIFT = 9;
+    private static final int BLOCK_POINTS = 1 << BLOCK_SHIFT;
+    private static final int CACHE_SLOTS = 16;
+
+    // sealed blocks
+    private long[][] blocks = new long[16][];
+    private int[] blockEnd = new int[16];
+    private int blockCount;
+    private int sealed;
+    // true if every block but the first one is full; the first one misses headGap points
+    private boolean uniform = true;
+    private int headGap;
+
+    // the most recent points, not encoded yet
+    private final float[] tailX = new float[BLOCK_POINTS];
+    private final float[] tailY = new float[BLOCK_POINTS];
+    private int tailSize;
+
+    private final BitWriter writer = new BitWriter();
+    private final DecodedBlock[] cache = new DecodedBlock[CACHE_SLOTS];
+    private int lastBlock;
+
+    public CompressedStorage() {
+    }
+
+    /**
+     * Helper function. Returns the index of the first point of the specified block.
+     */
+
+    private int firstOf(int block) {
+        return block == 0 ? 0 : blockEnd[block - 1];
+    }
+
+    /**
+     * Helper function. Returns the block that holds the specified sealed point.
+     * <br>
+     * Time required: O(1) when every block but the first one is full or the point belongs to the last block found,
+     * O(log(blocks)) otherwise
+     */
+
+    private int blockOf(int i) {
+        if (uniform) {
+            return (i + headGap) >>> BLOCK_SHIFT;
+        }
+        int block = lastBlock;
+        if (block < blockCount && i >= firstOf(block) && i < blockEnd[block]) {
+            return block;
+        }
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockEnd[middle] <= i) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        lastBlock = low;
+        return low;
+    }
+
+    /**
+     * Helper function. Returns the decoded block that holds the specified sealed point.
+     */
+
+    private DecodedBlock decoded(int i) {
+        int block = blockOf(i);
+        int slot = block & (CACHE_SLOTS - 1);
+        DecodedBlock result = cache[slot];
+        if (result == null) {
+            result = new DecodedBlock();
+            cache[slot] = result;
+        }
+        if (result.block != block) {
+            int first = firstOf(block);
+            result.decode(block, first, blocks[block], blockEnd[block] - first);
+        }
+        return result;
+    }
+
+    /**
+     * Helper function. Encodes a sequence of points into a block.
+     * <br>
+     * Time required: T(length)
+     */
+
+    private long[] encode(float[] x, float[] y, int length) {
+        BitWriter w = writer;
+        w.reset();
+        int previousX = Float.floatToRawIntBits(x[0]);
+        int previousY = Float.floatToRawIntBits(y[0]);
+        w.write(previousX, 32);
+        w.write(previousY, 32);
+
+        long previousDelta = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int k = 1; k < length; k++) {
+            // delta-of-delta of the x-values
+            int bitsX = Float.floatToRawIntBits(x[k]);
+            long delta = (long) bitsX - previousX;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                w.write(0b0, 1);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                w.write(0b10, 2);
+                w.write(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                w.write(0b110, 3);
+                w.write(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                w.write(0b1110, 4);
+                w.write(deltaOfDelta, 12);
+            } else {
+                // the value itself
+                w.write(0b1111, 4);
+                w.write(bitsX, 32);
+            }
+            previousDelta = delta;
+            previousX = bitsX;
+
+            // XOR of the y-values
+            int bitsY = Float.floatToRawIntBits(y[k]);
+            int xor = bitsY ^ previousY;
+            if (xor == 0) {
+                w.write(0b0, 1);
+            } else {
+                int leading = Math.min(31, Integer.numberOfLeadingZeros(xor));
+                int trailing = Integer.numberOfTrailingZeros(xor);
+                if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+                    // reuses the previous window of meaningful bits
+                    w.write(0b10, 2);
+                    w.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+                } else {
+                    int meaningful = 32 - leading - trailing;
+                    w.write(0b11, 2);
+                    w.write(leading, 5);
+                    w.write(meaningful - 1, 5);
+                    w.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousY = bitsY;
+        }
+        return w.toArray();
+    }
+
+    /**
+     * Helper function. Makes room for one more block in the directory.
+     */
+
+    private void ensureBlockCapacity() {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, 2 * blockCount);
+            blockEnd = Arrays.copyOf(blockEnd, 2 * blockCount);
+        }
+    }
+
+    /**
+     * Helper function. Encodes the uncompressed points into a new block.
+     */
+
+    private void seal() {
+        ensureBlockCapacity();
+        blocks[blockCount] = encode(tailX, tailY, tailSize);
+        sealed += tailSize;
+        blockEnd[blockCount++] = sealed;
+        tailSize = 0;
+    }
+
+    /**
+     * Helper function. Forgets the decoded blocks; their arrays are kept.
+     */
+
+    private void invalidateCache() {
+        for (DecodedBlock block : cache) {
+            if (block != null) {
+                block.block = -1;
+            }
+        }
+        lastBlock = 0;
+    }
+
+    @Override
+    void add(float x, float y) {
+        tailX[tailSize] = x;
+        tailY[tailSize] = y;
+        tailSize++;
+        statistics.add(x, y);
+        if (tailSize == BLOCK_POINTS) {
+            seal();
+        }
+    }
+
+    /**
+     * Appends a sequence of points, encoding a block every 512 points.
+     */
+
+    @Override
+    void addAll(float[] x, float[] y, int offset, int length) {
+        checkRange(x, y, offset, length);
+        int i = offset;
+        int end = offset + length;
+        while (i < end) {
+            int chunk = Math.min(end - i, BLOCK_POINTS - tailSize);
+            System.arraycopy(x, i, tailX, tailSize, chunk);
+            System.arraycopy(y, i, tailY, tailSize, chunk);
+            tailSize += chunk;
+            i += chunk;
+            if (tailSize == BLOCK_POINTS) {
+                seal();
+            }
+        }
+        statistics.addAll(x, y, offset, length);
+    }
+
+    /**
+     * Replaces the specified point. A compressed point is replaced by re-encoding its block.
+     * <br>
+     * Time required: O(1) for the most recent points, O(block size) otherwise
+     */
+
+    @Override
+    void set(int i, float x, float y) {
+        checkIndex(i, size());
+        if (i >= sealed) {
+            int k = i - sealed;
+            statistics.remove(tailX[k], tailY[k]);
+            tailX[k] = x;
+            tailY[k] = y;
+        } else {
+            // the decoded block is updated in place, so it stays valid
+            DecodedBlock block = decoded(i);
+            int k = i - block.first;
+            statistics.remove(block.xs[k], block.ys[k]);
+            block.xs[k] = x;
+            block.ys[k] = y;
+            blocks[block.block] = encode(block.xs, block.ys, block.length);
+        }
+        statistics.add(x, y);
+    }
+
+    /**
+     * Removes the specified point and shifts the following points to the left. A compressed point is removed by
+     * re-encoding its block, which is dropped when it becomes empty.
+     * <br>
+     * Time required: O(block size + blocks)
+     */
+
+    @Override
+    void remove(int i) {
+        checkIndex(i, size());
+        if (i >= sealed) {
+            int k = i - sealed;
+            statistics.remove(tailX[k], tailY[k]);
+            System.arraycopy(tailX, k + 1, tailX, k, tailSize - k - 1);
+            System.arraycopy(tailY, k + 1, tailY, k, tailSize - k - 1);
+            tailSize--;
+            return;
+        }
+
+        DecodedBlock block = decoded(i);
+        int b = block.block;
+        int k = i - block.first;
+        int length = block.length;
+        statistics.remove(block.xs[k], block.ys[k]);
+        if (length == 1) {
+            System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+            System.arraycopy(blockEnd, b + 1, blockEnd, b, blockCount - b - 1);
+            blocks[--blockCount] = null;
+        } else {
+            System.arraycopy(block.xs, k + 1, block.xs, k, length - k - 1);
+            System.arraycopy(block.ys, k + 1, block.ys, k, length - k - 1);
+            blocks[b] = encode(block.xs, block.ys, length - 1);
+        }
+        for (int j = b; j < blockCount; j++) {
+            blockEnd[j]--;
+        }
+        sealed--;
+        if (b > 0) {
+            uniform = false;
+        } else {
+            // the following blocks are still full
+            headGap = blockCount == 0 ? 0 : BLOCK_POINTS - blockEnd[0];
+        }
+        invalidateCache();
+    }
+
+    @Override
+    void clear() {
+        Arrays.fill(blocks, 0, blockCount, null);
+        blockCount = 0;
+        sealed = 0;
+        tailSize = 0;
+        uniform = true;
+        headGap = 0;
+        invalidateCache();
+        statistics.clear();
+    }
+
+    /**
+     * @return false: reads decode blocks into shared arrays
+     */
+
+    @Override
+    boolean allowsConcurrentReads() {
+        return false;
+    }
+
+    @Override
+    public float getX(int i) {
+        checkIndex(i, size());
+        if (i >= sealed) {
+            return tailX[i - sealed];
+        }
+        DecodedBlock block = decoded(i);
+        return block.xs[i - block.first];
+    }
+
+    @Override
+    public float getY(int i) {
+        checkIndex(i, size());
+        if (i >= sealed) {
+            return tailY[i - sealed];
+        }
+        DecodedBlock block = decoded(i);
+        return block.ys[i - block.first];
+    }
+
+    @Override
+    public int size() {
+        return sealed + tailSize;
+    }
+
+    /**
+     * @return the estimated amount of memory, in bytes, taken by the points: the encoded blocks, the block
+     * directory and the uncompressed points
+     */
+
+    public long compressedBytes() {
+        long result = 8L * tailSize;
+        for (int b = 0; b < blockCount; b++) {
+            result += 8L * blocks[b].length + 4;
+        }
+        return result;
+    }
+
+    /**
+     * BitWriter appends bits, from the most significant one, to an array of longs.
+     */
+
+    private static final class BitWriter {
+        private long[] words = new long[64];
+        private int position;
+
+        void reset() {
+            Arrays.fill(words, 0, (position + 63) >>> 6, 0L);
+            position = 0;
+        }
+
+        /**
+         * Writes the lowest bits of the given value.
+         *
+         * @param bits the number of bits to write between [1, 32]
+         */
+
+        void write(long value, int bits) {
+            value &= (1L << bits) - 1;
+            int word = position >>> 6;
+            int free = 64 - (position & 63);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, 2 * words.length);
+            }
+            if (bits <= free) {
+                words[word] |= value << (free - bits);
+            } else {
+                words[word] |= value >>> (bits - free);
+                words[word + 1] |= value << (64 - bits + free);
+            }
+            position += bits;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (position + 63) >>> 6);
+        }
+    }
+
+    /**
+     * DecodedBlock holds the points of a block, decoded sequentially into arrays that are reused by the
+     * following blocks.
+     */
+
+    private static final class DecodedBlock {
+        int block = -1;
+        int first;
+        int length;
+        final float[] xs = new float[BLOCK_POINTS];
+        final float[] ys = new float[BLOCK_POINTS];
+
+        private long[] words;
+        private int position;
+
+        /**
+         * Decodes the specified block into this one.
+         */
+
+        void decode(int block, int first, long[] words, int length) {
+            this.block = block;
+            this.first = first;
+            this.length = length;
+            this.words = words;
+            position = 0;
+
+            int bitsX = peek();
+            position += 32;
+            int bitsY = peek();
+            position += 32;
+            xs[0] = Float.intBitsToFloat(bitsX);
+            ys[0] = Float.intBitsToFloat(bitsY);
+
+            long delta = 0;
+            int leading = 0;
+            int trailing = 0;
+            for (int k = 1; k < length; k++) {
+                // the control bits and the delta-of-delta are read from the same 32 bits
+                int bits = peek();
+                if (bits >= 0) {
+                    position += 1;
+                    bitsX += (int) delta;
+                } else if (bits << 1 >= 0) {
+                    delta += (bits << 2) >> 25;
+                    position += 9;
+                    bitsX += (int) delta;
+                } else if (bits << 2 >= 0) {
+                    delta += (bits << 3) >> 23;
+                    position += 12;
+                    bitsX += (int) delta;
+                } else if (bits << 3 >= 0) {
+                    delta += (bits << 4) >> 20;
+                    position += 16;
+                    bitsX += (int) delta;
+                } else {
+                    position += 4;
+                    int value = peek();
+                    position += 32;
+                    delta = (long) value - bitsX;
+                    bitsX = value;
+                }
+                xs[k] = Float.intBitsToFloat(bitsX);
+
+                bits = peek();
+                if (bits >= 0) {
+                    position += 1;
+                } else {
+                    if (bits << 1 < 0) {
+                        leading = (bits >>> 25) & 0x1F;
+                        trailing = 32 - leading - ((bits >>> 20) & 0x1F) - 1;
+                        position += 12;
+                    } else {
+                        position += 2;
+                    }
+                    int meaningful = 32 - leading - trailing;
+                    bitsY ^= (peek() >>> (32 - meaningful)) << trailing;
+                    position += meaningful;
+                }
+                ys[k] = Float.intBitsToFloat(bitsY);
+            }
+        }
+
+        /**
+         * Helper function. Returns the next 32 bits without consuming them.
+         */
+
+        private int peek() {
+            int word = position >>> 6;
+            int offset = position & 63;
+            long bits = words[word] << offset;
+            if (offset > 32 && word + 1 < words.length) {
+                bits |= words[word + 1] >>> (64 - offset);
+            }
+            return (int) (bits >>> 32);
+        }
+    }
+}
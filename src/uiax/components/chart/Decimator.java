@@ -0,0 +1,383 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * Decimator reduces a {@link PointStorage} to the points needed to render it on a given viewport width.
+ * <br>
+ * Two algorithms are available:
+ * <ul>
+ *     <li>Largest-Triangle-Three-Buckets (LTTB): splits the points into buckets and keeps, for each bucket,
+ *     the point that forms the largest triangle with its neighbours;</li>
+ *     <li>M4: for each pixel column keeps the first, the last, the minimum and the maximum point,
+ *     so that the rendered line is pixel-exact.</li>
+ * </ul>
+ * Both algorithms assume that the points are sorted on the x-axis.
+ * <br>
+ * When a {@link MinMaxPyramid} is given, the points are decimated from the pyramid level that matches the viewport
+ * width, in O(pixels) regardless of the number of points: M4 keeps the first, the last, the minimum and the maximum
+ * point of each pyramid bucket, while LTTB selects its points among the minimum and the maximum point of each
+ * bucket (MinMaxLTTB).
+ * <br>
+ * The result is a list of indices, in ascending order, of the points to render. It is cached and recalculated
+ * only when the data version, the index range, the viewport width or the algorithm change.
+ */
+
+final class Decimator {
+    private int[] indices = new int[64];
+    private int size;
+    private int unchanged;
+    private boolean decimated;
+
+    private long version = -1;
+    private long editVersion = -1;
+    private int width = -1;
+    private int rangeFrom = -1;
+    private int rangeTo = -1;
+    private DrawableDistribution.DECIMATION mode;
+    private PointStorage storage;
+
+    /**
+     * Helper function. Makes sure that the index buffer can hold the specified amount of indices.
+     */
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(capacity, 2 * indices.length));
+        }
+    }
+
+    /**
+     * Helper function. Appends an index to the result.
+     */
+
+    private void append(int index) {
+        ensureCapacity(size + 1);
+        indices[size++] = index;
+    }
+
+    /**
+     * Updates the decimated indices if the data or the viewport changed.
+     * <br>
+     * When points have only been appended and the data doesn't need to be decimated yet, the new indices
+     * are appended to the previous ones (see {@link #unchanged()}).
+     *
+     * @param data          the points to decimate
+     * @param viewportWidth the viewport width in pixels
+     * @param mode          the decimation algorithm
+     * @return true if the indices have been recalculated
+     */
+
+    public boolean update(PointStorage data, int viewportWidth, DrawableDistribution.DECIMATION mode) {
+        return update(data, viewportWidth, mode, 0, data.size(), null);
+    }
+
+    /**
+     * Updates the decimated indices of the specified index range if the data, the range or the viewport changed.
+     * <br>
+     * When a {@link MinMaxPyramid} is given, the range is decimated from the pyramid level that matches the viewport
+     * width, in O(pixels); otherwise, only the whole data is decimated, in T(n).
+     *
+     * @param data          the points to decimate, sorted on the x-axis unless {@code mode} is NONE
+     * @param viewportWidth the viewport width in pixels
+     * @param mode          the decimation algorithm
+     * @param from          the first index of the range
+     * @param to            the last index (excluded) of the range
+     * @param pyramid       the {@link MinMaxPyramid} of the given data; it could be null
+     * @return true if the indices have been recalculated
+     */
+
+    public boolean update(PointStorage data, int viewportWidth, DrawableDistribution.DECIMATION mode,
+                          int from, int to, MinMaxPyramid pyramid) {
+        boolean fullRange = from == 0 && to == data.size();
+        if (storage == data && version == data.version && width == viewportWidth && this.mode == mode
+                && rangeFrom == from && rangeTo == to) {
+            unchanged = size;
+            return false;
+        }
+        boolean appended = storage == data && editVersion == data.editVersion
+                && width == viewportWidth && this.mode == mode && !decimated
+                && fullRange && rangeFrom == 0;
+        storage = data;
+        version = data.version;
+        editVersion = data.editVersion;
+        width = viewportWidth;
+        rangeFrom = from;
+        rangeTo = to;
+        this.mode = mode;
+
+        int points = to - from;
+        int columns = Math.max(1, viewportWidth);
+        int maxPoints = mode == DrawableDistribution.DECIMATION.LTTB ? 2 * columns : 4 * columns;
+        int previousSize = size;
+        unchanged = 0;
+        decimated = true;
+        size = 0;
+        if (mode == DrawableDistribution.DECIMATION.NONE || points <= maxPoints) {
+            decimated = false;
+            int first = appended ? Math.min(previousSize, points) : 0;
+            ensureCapacity(points);
+            for (int i = first; i < points; i++) {
+                indices[i] = from + i;
+            }
+            unchanged = first;
+            size = points;
+        } else if (pyramid != null) {
+            pyramid.validate(data);
+            if (mode == DrawableDistribution.DECIMATION.M4) {
+                range(data, pyramid, from, to, columns, true);
+            } else {
+                // LTTB selects among the minimum and the maximum point of twice as many buckets
+                range(data, pyramid, from, to, maxPoints, false);
+                if (size > maxPoints) {
+                    lttb(data, indices, size, maxPoints);
+                }
+            }
+        } else if (!fullRange) {
+            ensureCapacity(points);
+            for (int i = from; i < to; i++) {
+                indices[size++] = i;
+            }
+        } else if (mode == DrawableDistribution.DECIMATION.LTTB) {
+            lttb(data, null, points, maxPoints);
+        } else {
+            m4(data, columns);
+        }
+        return true;
+    }
+
+    /**
+     * Helper function. Decimates an index range with a {@link MinMaxPyramid}: keeps the minimum and the maximum
+     * point of each bucket and, if required, the first and the last one.
+     * <br>
+     * Time required: O(buckets)
+     */
+
+    private void range(PointStorage data, MinMaxPyramid pyramid, int from, int to, int buckets,
+                       boolean firstLast) {
+        int level = pyramid.level(from, to, buckets);
+        if (level == -1) {
+            ensureCapacity(to - from);
+            for (int i = from; i < to; i++) {
+                indices[size++] = i;
+            }
+            return;
+        }
+        if (level == 0 && (to - from) / pyramid.bucketSize(0) < buckets) {
+            // the first level is coarser than the viewport
+            minMax(data, from, to, buckets, firstLast);
+            return;
+        }
+
+        int bucketSize = pyramid.bucketSize(level);
+        append(from);
+        int lastBucket = pyramid.bucketOf(level, to - 1);
+        for (int bucket = pyramid.bucketOf(level, from); bucket <= lastBucket; bucket++) {
+            int start = pyramid.bucketStart(level, bucket);
+            int min = pyramid.getMin(level, bucket);
+            int max = pyramid.getMax(level, bucket);
+            if (firstLast) appendInRange(start, to);
+            appendInRange(Math.min(min, max), to);
+            appendInRange(Math.max(min, max), to);
+            if (firstLast) appendInRange((int) Math.min(to, (long) start + bucketSize) - 1, to);
+        }
+        appendInRange(to - 1, to);
+    }
+
+    /**
+     * Helper function. Decimates an index range by keeping the minimum and the maximum point of each group
+     * of consecutive points, with one group for each bucket, and, if required, the first and the last one.
+     * <br>
+     * Time required: T(to - from)
+     */
+
+    private void minMax(PointStorage data, int from, int to, int buckets, boolean firstLast) {
+        int groupSize = (int) (((long) to - from + buckets - 1) / buckets);
+        append(from);
+        for (int start = from, end; start < to; start = end) {
+            end = (int) Math.min(to, (long) start + groupSize);
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                float y = data.getY(i);
+                if (y < data.getY(min)) min = i;
+                if (y > data.getY(max)) max = i;
+            }
+            if (firstLast) appendInRange(start, to);
+            appendInRange(Math.min(min, max), to);
+            appendInRange(Math.max(min, max), to);
+            if (firstLast) appendInRange(end - 1, to);
+        }
+        appendInRange(to - 1, to);
+    }
+
+    /**
+     * Helper function. Appends an index if it follows the last one and precedes the given limit.
+     */
+
+    private void appendInRange(int index, int to) {
+        if (index < to && index > indices[size - 1]) {
+            append(index);
+        }
+    }
+
+    /**
+     * Forces the indices to be recalculated on the next update.
+     */
+
+    public void invalidate() {
+        version = -1;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets.
+     * <br>
+     * The candidates can be the given indices, in ascending order, or all the points. The result can be stored
+     * into the same array that holds the candidates, since each point is selected after the candidates it reads.
+     * <br>
+     * Time required: T(count)
+     *
+     * @param candidates the indices of the candidate points or null to consider all the points
+     * @param count      the number of candidates
+     * @param threshold  the number of points to keep (at least 3)
+     */
+
+    private void lttb(PointStorage data, int[] candidates, int count, int threshold) {
+        ensureCapacity(threshold);
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int last = candidate(candidates, count - 1);
+
+        int a = candidate(candidates, 0);
+        size = 0;
+        append(a);
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket
+            int avgStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, count);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                int index = candidate(candidates, j);
+                avgX += data.getX(index);
+                avgY += data.getY(index);
+            }
+            int avgLength = Math.max(1, avgEnd - avgStart);
+            avgX /= avgLength;
+            avgY /= avgLength;
+
+            // point of the current bucket with the largest triangle
+            int rangeStart = (int) Math.floor(i * bucketSize) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * bucketSize) + 1;
+            float ax = data.getX(a);
+            float ay = data.getY(a);
+            double maxArea = -1;
+            int next = candidate(candidates, rangeStart);
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                int index = candidate(candidates, j);
+                double area = Math.abs((ax - avgX) * (data.getY(index) - ay) - (ax - data.getX(index)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = index;
+                }
+            }
+
+            append(next);
+            a = next;
+        }
+
+        append(last);
+    }
+
+    /**
+     * Helper function. Returns the index of the specified candidate.
+     */
+
+    private static int candidate(int[] candidates, int k) {
+        return candidates == null ? k : candidates[k];
+    }
+
+    /**
+     * M4 decimation: keeps the first, last, minimum and maximum point of each pixel column.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param columns the number of pixel columns
+     */
+
+    private void m4(PointStorage data, int columns) {
+        int points = data.size();
+        ensureCapacity(4 * columns);
+
+        float xMin = Float.POSITIVE_INFINITY;
+        float xMax = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < points; i++) {
+            float x = data.getX(i);
+            if (x < xMin) xMin = x;
+            if (x > xMax) xMax = x;
+        }
+        float scale = xMax > xMin ? (columns - 1) / (xMax - xMin) : 0f;
+
+        int column = -1;
+        int first = 0;
+        int last = 0;
+        int min = 0;
+        int max = 0;
+        for (int i = 0; i < points; i++) {
+            int pointColumn = (int) ((data.getX(i) - xMin) * scale);
+            if (pointColumn != column) {
+                if (column != -1) {
+                    flush(first, min, max, last);
+                }
+                column = pointColumn;
+                first = last = min = max = i;
+            } else {
+                float y = data.getY(i);
+                if (y < data.getY(min)) min = i;
+                if (y > data.getY(max)) max = i;
+                last = i;
+            }
+        }
+        if (column != -1) {
+            flush(first, min, max, last);
+        }
+    }
+
+    /**
+     * Helper function. Appends the four indices of a column in ascending order, without duplicates.
+     */
+
+    private void flush(int first, int min, int max, int last) {
+        append(first);
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        if (low != first) append(low);
+        if (high != low && high != last) append(high);
+        if (last != first && last != low) append(last);
+    }
+
+    /**
+     * @return the number of leading indices that haven't changed during the last update
+     */
+
+    public int unchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return the number of points to render
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param k the position between [0, size())
+     * @return the index of the k-th point to render
+     */
+
+    public int get(int k) {
+        return indices[k];
+    }
+}
@@ -0,0 +1,168 @@
+package uiax.components.chart;
+
+import uia.core.rendering.color.Color;
+import uia.core.rendering.image.Image;
+
+import java.util.Arrays;
+
+/**
+ * DensityGrid renders a large amount of points as a density heatmap.
+ * <br>
+ * Points are accumulated, in a single pass, into a grid of counters with one cell for each viewport pixel.
+ * Counts are colour-mapped on a logarithmic scale into ARGB pixels: empty cells are transparent, the others
+ * have the colour of the points and an opacity that grows with the count.
+ * <br>
+ * The grid is cached. When points are only appended and the axis range doesn't change, only the new points are
+ * accumulated and only the cells they touch are colour-mapped again, unless the highest count doubles.
+ * Any other change accumulates the points from scratch.
+ */
+
+final class DensityGrid {
+    private static final int MIN_ALPHA = 48;
+
+    private final Image image = new Image();
+    private int[] counts = new int[0];
+    private int[] pixels = new int[0];
+    private int width;
+    private int height;
+    private int maxCount;
+    private int scale;
+
+    // cache key
+    private PointStorage storage;
+    private long editVersion = -1;
+    private int from = -1;
+    private int accumulated;
+    private int rgb;
+    private final float[] range = new float[4];
+
+    // dirty region
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+
+    /**
+     * Helper function. Resets the grid.
+     */
+
+    private void reset(int gridWidth, int gridHeight) {
+        int cells = gridWidth * gridHeight;
+        if (counts.length < cells) {
+            counts = new int[cells];
+            pixels = new int[cells];
+        } else {
+            Arrays.fill(counts, 0, cells, 0);
+        }
+        width = gridWidth;
+        height = gridHeight;
+        maxCount = 0;
+        scale = 0;
+    }
+
+    /**
+     * Updates the heatmap.
+     *
+     * @param data    the points to render
+     * @param from    the first index of the points to render
+     * @param to      the last index (excluded) of the points to render
+     * @param width   the viewport width in pixels
+     * @param height  the viewport height in pixels
+     * @param color   the colour of the points
+     * @param backend the {@link ImageBackend} used to write the image
+     * @return the heatmap {@link Image}
+     */
+
+    public Image update(PointStorage data, int from, int to, int width, int height,
+                        float xMin, float xMax, float yMin, float yMax,
+                        Color color, ImageBackend backend) {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        int colorRGB = (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
+        boolean rebuild = storage != data || editVersion != data.editVersion || this.from != from
+                || accumulated > to || this.width != width || this.height != height || rgb != colorRGB
+                || Float.compare(range[0], xMin) != 0 || Float.compare(range[1], xMax) != 0
+                || Float.compare(range[2], yMin) != 0 || Float.compare(range[3], yMax) != 0;
+        if (rebuild) {
+            storage = data;
+            editVersion = data.editVersion;
+            this.from = from;
+            accumulated = from;
+            rgb = colorRGB;
+            range[0] = xMin;
+            range[1] = xMax;
+            range[2] = yMin;
+            range[3] = yMax;
+            reset(width, height);
+        }
+
+        dirtyMinX = width;
+        dirtyMinY = height;
+        dirtyMaxX = -1;
+        dirtyMaxY = -1;
+        accumulate(data, to, xMin, xMax, yMin, yMax);
+
+        int newScale = maxCount == 0 ? 0 : Integer.highestOneBit(maxCount) << 1;
+        if (rebuild || newScale != scale) {
+            scale = newScale;
+            dirtyMinX = 0;
+            dirtyMinY = 0;
+            dirtyMaxX = width - 1;
+            dirtyMaxY = height - 1;
+        }
+
+        if (dirtyMaxX >= dirtyMinX) {
+            colorMap();
+            backend.writePixels(image, width, height, pixels,
+                    dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX + 1, dirtyMaxY - dirtyMinY + 1);
+        }
+        return image;
+    }
+
+    /**
+     * Helper function. Accumulates the points that haven't been accumulated yet.
+     * <br>
+     * Time required: T(k), where k is the number of new points
+     */
+
+    private void accumulate(PointStorage data, int to, float xMin, float xMax, float yMin, float yMax) {
+        float scaleX = xMax > xMin ? width / (xMax - xMin) : 0f;
+        float scaleY = yMax > yMin ? height / (yMax - yMin) : 0f;
+        for (int i = accumulated; i < to; i++) {
+            float cellX = (data.getX(i) - xMin) * scaleX;
+            float cellY = (yMax - data.getY(i)) * scaleY;
+            // the maximum values belong to the last cells
+            int column = cellX == width ? width - 1 : (int) cellX;
+            int row = cellY == height ? height - 1 : (int) cellY;
+            if (cellX >= 0 && cellY >= 0 && column < width && row < height) {
+                int count = ++counts[row * width + column];
+                if (count > maxCount) maxCount = count;
+                if (column < dirtyMinX) dirtyMinX = column;
+                if (column > dirtyMaxX) dirtyMaxX = column;
+                if (row < dirtyMinY) dirtyMinY = row;
+                if (row > dirtyMaxY) dirtyMaxY = row;
+            }
+        }
+        accumulated = to;
+    }
+
+    /**
+     * Helper function. Colour-maps the cells of the dirty region.
+     */
+
+    private void colorMap() {
+        double logScale = Math.log1p(scale);
+        for (int row = dirtyMinY; row <= dirtyMaxY; row++) {
+            for (int column = dirtyMinX; column <= dirtyMaxX; column++) {
+                int cell = row * width + column;
+                int count = counts[cell];
+                if (count == 0) {
+                    pixels[cell] = 0;
+                } else {
+                    int alpha = MIN_ALPHA + (int) ((255 - MIN_ALPHA) * Math.log1p(count) / logScale);
+                    pixels[cell] = (Math.min(alpha, 255) << 24) | rgb;
+                }
+            }
+        }
+    }
+}
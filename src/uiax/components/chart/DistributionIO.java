@@ -0,0 +1,518 @@
+package uiax.components.chart;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * DistributionIO imports and exports the points of a {@link PointDistribution} in bulk.
+ * <br>
+ * Two formats are supported:
+ * <ul>
+ *     <li>CSV: rows are read from a channel into a byte buffer and the numbers are parsed straight from the bytes,
+ *     without creating a String for each value;</li>
+ *     <li>binary snapshot: a 32-byte header (magic number, format version, amount of points and CRC-32 of the
+ *     points) followed by the points as interleaved little-endian float pairs (x, y).</li>
+ * </ul>
+ * Points are appended in batches through {@link PointDistribution#addAll(float[], float[], int, int)}, so
+ * statistics and caches are updated once for each batch and not once for each point.
+ */
+
+public final class DistributionIO {
+    private static final int MAGIC = 0x50584955;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int BATCH = 1 << 13;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private DistributionIO() {
+    }
+
+    /**
+     * Appends the points of a CSV file to a distribution. The first column holds the values on the x-axis,
+     * the second one the values on the y-axis.
+     *
+     * @param file   a not null file path
+     * @param target a not null {@link PointDistribution}
+     * @param header true if the first row is a header to skip
+     * @return the amount of appended points
+     * @throws NullPointerException if {@code file == null || target == null}
+     * @throws IOException          if an I/O error occurs or a row is malformed
+     * @see #readCSV(ReadableByteChannel, PointDistribution, int, int, boolean)
+     */
+
+    public static int readCSV(Path file, PointDistribution target, boolean header) throws IOException {
+        Objects.requireNonNull(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readCSV(channel, target, 0, 1, header);
+        }
+    }
+
+    /**
+     * Appends the points read from a CSV channel to a distribution.
+     * <br>
+     * Values are separated by commas and rows by line feeds (optionally preceded by carriage returns);
+     * blank rows are skipped, while spaces and double quotes around a value are ignored. Rows are appended
+     * in batches, so when a malformed row is found the previous batches have already been appended.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param channel a not null readable channel; it isn't closed
+     * @param target  a not null {@link PointDistribution}
+     * @param xColumn the index of the column with the values on the x-axis
+     * @param yColumn the index of the column with the values on the y-axis
+     * @param header  true if the first row is a header to skip
+     * @return the amount of appended points
+     * @throws NullPointerException     if {@code channel == null || target == null}
+     * @throws IllegalArgumentException if {@code xColumn < 0 || yColumn < 0}
+     * @throws IOException              if an I/O error occurs or a row is malformed
+     */
+
+    public static int readCSV(ReadableByteChannel channel, PointDistribution target,
+                              int xColumn, int yColumn, boolean header) throws IOException {
+        Objects.requireNonNull(channel);
+        Objects.requireNonNull(target);
+        if (xColumn < 0 || yColumn < 0) {
+            throw new IllegalArgumentException("column can not be < 0");
+        }
+        return new CSVReader(channel, target, xColumn, yColumn).read(header);
+    }
+
+    /**
+     * Writes the points of a distribution to a CSV file, one row "x,y" for each point.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param source a not null {@link PointDistribution}
+     * @param file   a not null file path; an existing file is replaced
+     * @throws NullPointerException if {@code source == null || file == null}
+     * @throws IOException          if an I/O error occurs
+     */
+
+    public static void writeCSV(PointDistribution source, Path file) throws IOException {
+        PointStorage data = source.getStorage();
+        try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            int size = data.size();
+            for (int i = 0; i < size; i++) {
+                // a row takes at most 2 * 15 + 2 bytes
+                if (buffer.remaining() < 32) {
+                    writeFully(channel, buffer);
+                }
+                putASCII(buffer, Float.toString(data.getX(i)));
+                buffer.put((byte) ',');
+                putASCII(buffer, Float.toString(data.getY(i)));
+                buffer.put((byte) '\n');
+            }
+            writeFully(channel, buffer);
+        }
+    }
+
+    /**
+     * Saves the points of a distribution to a binary snapshot.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param source a not null {@link PointDistribution}
+     * @param file   a not null file path; an existing file is replaced
+     * @throws NullPointerException if {@code source == null || file == null}
+     * @throws IOException          if an I/O error occurs
+     */
+
+    public static void save(PointDistribution source, Path file) throws IOException {
+        PointStorage data = source.getStorage();
+        try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int size = data.size();
+            CRC32 checksum = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            for (int i = 0; i < size; i++) {
+                if (buffer.remaining() < 8) {
+                    writeBlock(channel, buffer, checksum);
+                }
+                buffer.putFloat(data.getX(i)).putFloat(data.getY(i));
+            }
+            writeBlock(channel, buffer, checksum);
+
+            buffer.putInt(MAGIC)
+                    .putInt(FORMAT)
+                    .putLong(size)
+                    .putLong(checksum.getValue())
+                    .putLong(0L)
+                    .flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+        }
+    }
+
+    /**
+     * Appends the points of a binary snapshot to a distribution.
+     * <br>
+     * The checksum is verified before the distribution is modified, so a corrupted snapshot leaves
+     * it unchanged.
+     * <br>
+     * Time required: T(n)
+     * <br>
+     * Space required: T(n) to stage the points
+     *
+     * @param file   a not null file path
+     * @param target a not null {@link PointDistribution}
+     * @return the amount of appended points
+     * @throws NullPointerException if {@code file == null || target == null}
+     * @throws IOException          if an I/O error occurs or the snapshot is invalid or corrupted
+     */
+
+    public static int load(Path file, PointDistribution target) throws IOException {
+        Objects.requireNonNull(target);
+        try (FileChannel channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(HEADER_BYTES);
+            readFully(channel, buffer);
+            buffer.flip();
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("not a snapshot file");
+            }
+            long size = buffer.getLong();
+            long expectedChecksum = buffer.getLong();
+            if (size < 0 || size > Integer.MAX_VALUE || channel.size() != HEADER_BYTES + 8 * size) {
+                throw new IOException("truncated snapshot file");
+            }
+
+            int points = (int) size;
+            float[] xs = new float[points];
+            float[] ys = new float[points];
+            CRC32 checksum = new CRC32();
+            int read = 0;
+            while (read < points) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_BYTES, 8L * (points - read)));
+                readFully(channel, buffer);
+                buffer.flip();
+                checksum.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    xs[read] = buffer.getFloat();
+                    ys[read] = buffer.getFloat();
+                    read++;
+                }
+            }
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("corrupted snapshot file");
+            }
+
+            target.addAll(xs, ys, 0, points);
+            return points;
+        }
+    }
+
+    /**
+     * Helper function. Writes the buffer content, updating the checksum, and clears the buffer.
+     */
+
+    private static void writeBlock(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Helper function. Writes the buffer content and clears the buffer.
+     */
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Helper function. Fills the buffer up to its limit or until the end of the channel.
+     */
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // reads until the buffer is full
+        }
+    }
+
+    /**
+     * Helper function. Puts the characters of an ASCII string.
+     */
+
+    private static void putASCII(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * CSVReader parses the rows of a channel chunk by chunk. A row that crosses the end of the buffer is moved to
+     * its beginning before the next read; the buffer grows when a single row doesn't fit it.
+     */
+
+    private static final class CSVReader {
+        private final ReadableByteChannel channel;
+        private final PointDistribution target;
+        private final int xColumn;
+        private final int yColumn;
+        private final float[] xs = new float[BATCH];
+        private final float[] ys = new float[BATCH];
+        private int batchSize;
+        private int points;
+        private long row;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+        // the value parsed by parseColumn
+        private float value;
+
+        CSVReader(ReadableByteChannel channel, PointDistribution target, int xColumn, int yColumn) {
+            this.channel = channel;
+            this.target = target;
+            this.xColumn = xColumn;
+            this.yColumn = yColumn;
+        }
+
+        int read(boolean header) throws IOException {
+            boolean skip = header;
+            boolean end = false;
+            while (!end) {
+                end = channel.read(buffer) == -1;
+                byte[] bytes = buffer.array();
+                int limit = buffer.position();
+                int start = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (bytes[i] == '\n') {
+                        if (skip) {
+                            skip = false;
+                            row++;
+                        } else {
+                            parseRow(bytes, start, i);
+                        }
+                        start = i + 1;
+                    }
+                }
+                if (end && start < limit && !skip) {
+                    // last row without line feed
+                    parseRow(bytes, start, limit);
+                    start = limit;
+                }
+
+                // moves the partial row to the beginning of the buffer
+                int remaining = limit - start;
+                if (start == 0 && remaining == buffer.capacity()) {
+                    ByteBuffer grown = ByteBuffer.allocate(2 * buffer.capacity());
+                    grown.put(bytes, 0, remaining);
+                    buffer = grown;
+                } else {
+                    System.arraycopy(bytes, start, bytes, 0, remaining);
+                    buffer.clear();
+                    buffer.position(remaining);
+                }
+            }
+            flushBatch();
+            return points;
+        }
+
+        /**
+         * Helper function. Parses the row between [from, to) and adds its point to the batch.
+         */
+
+        private void parseRow(byte[] bytes, int from, int to) throws IOException {
+            row++;
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            if (isBlank(bytes, from, to)) {
+                return;
+            }
+
+            float x = 0f;
+            float y = 0f;
+            int found = 0;
+            int column = 0;
+            int start = from;
+            for (int i = from; i <= to && found < 2; i++) {
+                if (i == to || bytes[i] == ',') {
+                    if (column == xColumn) {
+                        x = parseColumn(bytes, start, i);
+                        found++;
+                    }
+                    if (column == yColumn) {
+                        y = parseColumn(bytes, start, i);
+                        found++;
+                    }
+                    column++;
+                    start = i + 1;
+                }
+            }
+            if (found < (xColumn == yColumn ? 1 : 2)) {
+                throw new IOException("missing column at row " + row);
+            }
+
+            xs[batchSize] = x;
+            ys[batchSize] = y;
+            if (++batchSize == BATCH) {
+                flushBatch();
+            }
+        }
+
+        /**
+         * Helper function. Appends the batch to the target distribution.
+         */
+
+        private void flushBatch() {
+            if (batchSize > 0) {
+                target.addAll(xs, ys, 0, batchSize);
+                points += batchSize;
+                batchSize = 0;
+            }
+        }
+
+        /**
+         * Helper function. Parses the value between [from, to), ignoring spaces and double quotes around it.
+         */
+
+        private float parseColumn(byte[] bytes, int from, int to) throws IOException {
+            while (from < to && (bytes[from] == ' ' || bytes[from] == '\t' || bytes[from] == '"')) from++;
+            while (to > from && (bytes[to - 1] == ' ' || bytes[to - 1] == '\t' || bytes[to - 1] == '"')) to--;
+            if (!parseFloat(bytes, from, to)) {
+                throw new IOException("invalid number at row " + row);
+            }
+            return value;
+        }
+
+        /**
+         * Helper function. Parses a decimal number into {@link #value}.
+         * <br>
+         * Numbers whose digits and exponent can be combined exactly in double precision are converted with a
+         * single multiplication or division, which is correctly rounded; the others, and the rare values whose
+         * conversion to float would be rounded twice, are delegated to {@link Float#parseFloat(String)}.
+         *
+         * @return false if the bytes aren't a valid number
+         */
+
+        private boolean parseFloat(byte[] bytes, int from, int to) {
+            int i = from;
+            boolean negative = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negative = bytes[i] == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            int digits = 0;
+            boolean dot = false;
+            for (; i < to; i++) {
+                byte b = bytes[i];
+                if (b >= '0' && b <= '9') {
+                    digits++;
+                    if (mantissa == 0 && b == '0') {
+                        // leading zeros aren't significant
+                    } else if (significantDigits < 18) {
+                        mantissa = 10 * mantissa + (b - '0');
+                        significantDigits++;
+                    } else {
+                        significantDigits = 19;
+                        if (!dot) exponent++;
+                        continue;
+                    }
+                    if (dot) exponent--;
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else {
+                    break;
+                }
+            }
+            if (i < to && (bytes[i] == 'e' || bytes[i] == 'E') && digits > 0) {
+                int j = i + 1;
+                boolean negativeExponent = false;
+                if (j < to && (bytes[j] == '-' || bytes[j] == '+')) {
+                    negativeExponent = bytes[j] == '-';
+                    j++;
+                }
+                int explicitExponent = 0;
+                int exponentDigits = 0;
+                for (; j < to && bytes[j] >= '0' && bytes[j] <= '9'; j++) {
+                    explicitExponent = Math.min(100_000, 10 * explicitExponent + (bytes[j] - '0'));
+                    exponentDigits++;
+                }
+                if (exponentDigits == 0) {
+                    return false;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+                i = j;
+            }
+            if (i != to || digits == 0) {
+                return parseFallback(bytes, from, to);
+            }
+
+            if (mantissa == 0) {
+                value = negative ? -0f : 0f;
+                return true;
+            }
+            if (significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+                double result = exponent >= 0
+                        ? mantissa * POWERS_OF_TEN[exponent]
+                        : mantissa / POWERS_OF_TEN[-exponent];
+                float rounded = (float) result;
+                // a double halfway between two floats could be rounded twice
+                boolean halfway = (Double.doubleToRawLongBits(result) & 0x1FFFFFFFL) == 0x10000000L;
+                if (!halfway && rounded >= Float.MIN_NORMAL && rounded != Float.POSITIVE_INFINITY) {
+                    value = negative ? -rounded : rounded;
+                    return true;
+                }
+            }
+            return parseFallback(bytes, from, to);
+        }
+
+        /**
+         * Helper function. Parses a number with {@link Float#parseFloat(String)}.
+         */
+
+        private boolean parseFallback(byte[] bytes, int from, int to) {
+            try {
+                value = Float.parseFloat(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Helper function. Checks whether the given bytes are all spaces.
+         */
+
+        private static boolean isBlank(byte[] bytes, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] != ' ' && bytes[i] != '\t') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package uiax.components.chart;
 
-import uia.application.ui.component.utility.ComponentUtility;
 import uia.core.rendering.geometry.GeometryCollection;
 import uia.core.rendering.color.ColorCollection;
 import uia.core.rendering.geometry.Geometry;
 import uia.core.rendering.color.Color;
-import uia.core.rendering.Transform;
+import uia.core.rendering.image.Image;
 import uia.core.rendering.Graphics;
-import uia.utility.MathUtility;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -16,7 +15,47 @@ import java.util.Objects;
  */
 
 public class DrawableDistribution extends PointDistribution {
-    private final Transform markerTransform;
+
+    /**
+     * Render-time decimation algorithm
+     * <ul>
+     *     <li>NONE: every point is drawn;</li>
+     *     <li>LTTB: Largest-Triangle-Three-Buckets, about two points for each horizontal pixel;</li>
+     *     <li>M4: first, last, minimum and maximum point for each horizontal pixel.</li>
+     * </ul>
+     */
+
+    public enum DECIMATION {NONE, LTTB, M4}
+
+    private final Decimator decimator;
+    private DECIMATION decimation = DECIMATION.LTTB;
+    private final ShapeBatcher shapeBatcher;
+    private final ScreenProjection projection;
+    private final PointIndex pointIndex;
+    private final MinMaxPyramid pyramid;
+    private final float[] unprojectedPosition = {0f, 0f};
+    private final float[] visibleRange = new float[4];
+    private IngestionQueue ingestionQueue;
+    private double[] quantileLines = new double[0];
+    private Color quantileLineColor = ColorCollection.DARK_GRAY;
+    private final float[] quantileLineVertices = new float[4];
+    private final float[] screenPosition = {0f, 0f};
+    private Overlay[] overlays = new Overlay[0];
+    private int densityThreshold = Integer.MAX_VALUE;
+    private DensityGrid densityGrid;
+    private ImageBackend imageBackend;
+
+    /**
+     * Changes every time a graphical setting changes.
+     */
+    long styleVersion;
+
+    // last draw
+    private int drawnSize;
+    private int drawnPoints;
+    private long drawnEditVersion = -1;
+    private boolean drawnAsDensity;
+    private float[] appendedVertices = new float[64];
     private final Geometry geometryMarker;
     private Color lineColor;
     private Color pointColor;
@@ -27,14 +66,53 @@ public class DrawableDistribution extends PointDistribution {
     private boolean enablePoint = true;
 
     public DrawableDistribution() {
+        this(new ColumnarStorage());
+    }
+
+    /**
+     * Creates a new DrawableDistribution on top of the given storage.
+     *
+     * @param storage a not null {@link PointStorage} not used by other distributions, unless it is read-only
+     *                (see {@link SeriesFrame#view(int)})
+     * @throws NullPointerException if {@code storage == null}
+     */
+
+    public DrawableDistribution(PointStorage storage) {
+        super(storage);
+
         geometryMarker = GeometryCollection.rect(new Geometry());
 
-        markerTransform = new Transform();
+        decimator = new Decimator();
+        shapeBatcher = new ShapeBatcher();
+        projection = new ScreenProjection();
+        pointIndex = new PointIndex();
+        pyramid = new MinMaxPyramid();
 
         lineColor = ColorCollection.BLACK;
         pointColor = ColorCollection.RED;
     }
 
+    // decimation
+
+    /**
+     * Sets the decimation algorithm used when the distribution has more points than the viewport can show.
+     * The decimated points are cached until the data or the viewport width change.
+     * <br>
+     * Only points sorted on the x-axis (e.g. a time series) are decimated; otherwise, every point is drawn.
+     * Decimated points are read from a {@link MinMaxPyramid}, so the draw time depends on the viewport width,
+     * not on the number of points.
+     *
+     * @param decimation a not null {@link DECIMATION}
+     * @return this DrawableDistribution
+     * @throws NullPointerException if {@code decimation == null}
+     */
+
+    public DrawableDistribution setDecimation(DECIMATION decimation) {
+        this.decimation = Objects.requireNonNull(decimation);
+        styleVersion++;
+        return this;
+    }
+
     // point
 
     /**
@@ -46,6 +124,7 @@ public class DrawableDistribution extends PointDistribution {
 
     public DrawableDistribution enablePoint(boolean enablePoint) {
         this.enablePoint = enablePoint;
+        styleVersion++;
         return this;
     }
 
@@ -58,6 +137,7 @@ public class DrawableDistribution extends PointDistribution {
 
     public DrawableDistribution setPointSize(float pointSize) {
         this.pointSize = Math.max(pointSize, 0);
+        styleVersion++;
         return this;
     }
 
@@ -72,6 +152,7 @@ public class DrawableDistribution extends PointDistribution {
     public DrawableDistribution setPointColor(Color color) {
         Objects.requireNonNull(color);
         this.pointColor = color;
+        styleVersion++;
         return this;
     }
 
@@ -86,6 +167,7 @@ public class DrawableDistribution extends PointDistribution {
 
     public DrawableDistribution enableLine(boolean enableLine) {
         this.enableLine = enableLine;
+        styleVersion++;
         return this;
     }
 
@@ -100,6 +182,7 @@ public class DrawableDistribution extends PointDistribution {
     public DrawableDistribution setLineColor(Color color) {
         Objects.requireNonNull(color);
         this.lineColor = color;
+        styleVersion++;
         return this;
     }
 
@@ -116,6 +199,7 @@ public class DrawableDistribution extends PointDistribution {
             throw new IllegalArgumentException("lineWidth can not be < 0");
         }
         this.lineWidth = lineWidth;
+        styleVersion++;
         return this;
     }
 
@@ -133,91 +217,470 @@ public class DrawableDistribution extends PointDistribution {
             float vertexY = markerGeometry.getY(i);
             geometryMarker.addVertex(vertexX, vertexY);
         }
+        styleVersion++;
+        return this;
+    }
+
+    // density heatmap
+
+    /**
+     * Sets the amount of points above which the points are rendered as a density heatmap instead of markers.
+     * By default, the heatmap is disabled ({@code Integer.MAX_VALUE}); it also requires an {@link ImageBackend}.
+     * <br>
+     * The heatmap accumulates all the visible points into a grid with one cell for each viewport pixel and is drawn
+     * as a single image (see {@link #setImageBackend(ImageBackend)}); appended points only update the cells they
+     * touch.
+     *
+     * @param densityThreshold the amount of points, greater than or equal to zero
+     * @return this DrawableDistribution
+     * @throws IllegalArgumentException if {@code densityThreshold < 0}
+     */
+
+    public DrawableDistribution setDensityThreshold(int densityThreshold) {
+        if (densityThreshold < 0) {
+            throw new IllegalArgumentException("densityThreshold can not be < 0");
+        }
+        this.densityThreshold = densityThreshold;
+        styleVersion++;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ImageBackend} used to create the density heatmap image, e.g.
+     * {@link uiax.components.chart.awt.AWTImageBackend} on Swing.
+     * By default, there is no backend and points are always rendered as markers.
+     *
+     * @param imageBackend a not null {@link ImageBackend}
+     * @return this DrawableDistribution
+     * @throws NullPointerException if {@code imageBackend == null}
+     */
+
+    public DrawableDistribution setImageBackend(ImageBackend imageBackend) {
+        this.imageBackend = Objects.requireNonNull(imageBackend);
+        styleVersion++;
+        return this;
+    }
+
+    /**
+     * Helper function. Tells whether the given amount of visible points is rendered as a density heatmap.
+     */
+
+    private boolean isDensity(int points) {
+        return enablePoint && imageBackend != null && points > densityThreshold;
+    }
+
+    // quantile lines
+
+    /**
+     * Sets the quantiles, on the y-axis, to draw as horizontal reference lines (e.g. 0.5, 0.95 and 0.99 for
+     * the p50, p95 and p99 lines). Quantiles are estimated with {@link #getQuantile(AXIS, double)}.
+     *
+     * @param quantiles the quantiles between [0, 1]; no quantile to remove the lines
+     * @return this DrawableDistribution
+     * @throws NullPointerException     if {@code quantiles == null}
+     * @throws IllegalArgumentException if a quantile isn't between [0, 1]
+     */
+
+    public DrawableDistribution setQuantileLines(double... quantiles) {
+        for (double q : quantiles) {
+            if (!(q >= 0d && q <= 1d)) {
+                throw new IllegalArgumentException("quantiles must be between [0, 1]");
+            }
+        }
+        quantileLines = quantiles.clone();
+        styleVersion++;
         return this;
     }
 
     /**
-     * Calculates the marker position according to the component viewport.
+     * Sets the quantile lines color
+     *
+     * @param color a not null {@link Color}
+     * @return this DrawableDistribution
+     * @throws NullPointerException if {@code color == null}
+     */
+
+    public DrawableDistribution setQuantileLineColor(Color color) {
+        Objects.requireNonNull(color);
+        quantileLineColor = color;
+        styleVersion++;
+        return this;
+    }
+
+    // overlays
+
+    /**
+     * Adds an overlay, e.g. a {@link RegressionOverlay} or a {@link MovingAverageOverlay}, drawn on top of
+     * the points with the same axis range. The overlay is updated on each draw.
+     *
+     * @param overlay a not null {@link Overlay} not used by other distributions
+     * @return this DrawableDistribution
+     * @throws NullPointerException if {@code overlay == null}
+     */
+
+    public DrawableDistribution addOverlay(Overlay overlay) {
+        Objects.requireNonNull(overlay);
+        overlays = Arrays.copyOf(overlays, overlays.length + 1);
+        overlays[overlays.length - 1] = overlay;
+        styleVersion++;
+        return this;
+    }
+
+    /**
+     * Removes the given overlay.
+     *
+     * @param overlay the {@link Overlay} to remove
+     * @return this DrawableDistribution
+     */
+
+    public DrawableDistribution removeOverlay(Overlay overlay) {
+        for (int i = 0; i < overlays.length; i++) {
+            if (overlays[i] == overlay) {
+                Overlay[] result = new Overlay[overlays.length - 1];
+                System.arraycopy(overlays, 0, result, 0, i);
+                System.arraycopy(overlays, i + 1, result, i, result.length - i);
+                overlays = result;
+                styleVersion++;
+                break;
+            }
+        }
+        return this;
+    }
+
+    // concurrent ingestion
+
+    /**
+     * Attaches a queue through which other threads can add points to this distribution.
+     * Queued points are moved into the distribution by {@link #drainIngestionQueue()}.
+     *
+     * @param ingestionQueue an {@link IngestionQueue}; it could be null to detach the current one
+     * @return this DrawableDistribution
+     */
+
+    public DrawableDistribution setIngestionQueue(IngestionQueue ingestionQueue) {
+        this.ingestionQueue = ingestionQueue;
+        return this;
+    }
+
+    /**
+     * @return the attached {@link IngestionQueue} or null
+     */
+
+    public IngestionQueue getIngestionQueue() {
+        return ingestionQueue;
+    }
+
+    /**
+     * Moves the points queued by other threads into this distribution.
+     * It must be called by the thread that reads and draws this distribution.
+     *
+     * @return the number of added points
      */
 
-    private void calculateMarkerPosition(float[] target,
-                                         float[] componentBounds,
-                                         float viewportWidth, float viewportHeight,
-                                         float pointX, float pointY, float rotation,
-                                         float minPointX, float maxPointX,
-                                         float minPointY, float maxPointY) {
-        float xDist = viewportWidth * (MathUtility.normalize(pointX, minPointX, maxPointX) - 0.5f);
-        float yDist = -viewportHeight * (MathUtility.normalize(pointY, minPointY, maxPointY) - 0.5f);
-        target[0] = ComponentUtility.getPositionOnX(componentBounds[0], componentBounds[2], xDist, yDist, rotation);
-        target[1] = ComponentUtility.getPositionOnY(componentBounds[1], componentBounds[3], xDist, yDist, rotation);
+    public int drainIngestionQueue() {
+        IngestionQueue queue = ingestionQueue;
+        return queue == null ? 0 : queue.drainTo(this);
     }
 
-    private final float[] markerPosition = {0f, 0f};
-    private final float[] nextMarkerPosition = {0f, 0f};
+    /**
+     * Finds the point nearest to the given screen position, according to the last time this distribution
+     * has been drawn. The search is backed by an index (see {@link PointIndex}), so it doesn't scan all points.
+     *
+     * @param screenX     the position on the x-axis, in pixels
+     * @param screenY     the position on the y-axis, in pixels
+     * @param maxDistance the maximum distance, in pixels, between the position and the point
+     * @return the index of the nearest point or -1 if there is no point within the maximum distance
+     * or the distribution has never been drawn
+     */
+
+    public int nearest(float screenX, float screenY, float maxDistance) {
+        if (!projection.isValid()) {
+            return -1;
+        }
+        projection.unproject(screenX, screenY, unprojectedPosition);
+        return pointIndex.nearest(getStorage(),
+                unprojectedPosition[0], unprojectedPosition[1],
+                projection.scaleX(), projection.scaleY(), maxDistance);
+    }
+
+    /**
+     * Calculates the screen position of the given point, according to the last time this distribution
+     * has been drawn.
+     *
+     * @param i      the index of the point
+     * @param target a not null array where the position is stored
+     * @return the given array
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public float[] getScreenPosition(int i, float[] target) {
+        PointStorage data = getStorage();
+        projection.project(data.getX(i), data.getY(i), target);
+        return target;
+    }
+
+    /**
+     * Calculates the range of the points inside the given visible window.
+     * <br>
+     * On the y-axis, the range fits the visible points only when the points are sorted on the x-axis:
+     * the visible indices are found by binary search and their minimum and maximum are read from a
+     * {@link MinMaxPyramid} in O(log(n)). Otherwise, the range of all points is returned.
+     *
+     * @param viewStart the start of the visible window between [0, 1]
+     * @param viewEnd   the end of the visible window between [viewStart, 1]
+     * @param target    a not null array of four elements where xMin, xMax, yMin and yMax are stored
+     * @return the given array
+     */
+
+    public float[] getVisibleRange(float viewStart, float viewEnd, float[] target) {
+        float xMin = getMin(PointDistribution.AXIS.X);
+        float xRange = getMax(PointDistribution.AXIS.X) - xMin;
+        target[0] = xMin + viewStart * xRange;
+        target[1] = xMin + viewEnd * xRange;
+        fitRange(target, viewStart > 0f || viewEnd < 1f);
+        return target;
+    }
+
+    /**
+     * Fits the range on the y-axis ({@code target[2]} and {@code target[3]}) to the points between
+     * {@code target[0]} and {@code target[1]} on the x-axis. See {@link #getVisibleRange(float, float, float[])}.
+     *
+     * @param target a not null array of four elements: xMin, xMax, yMin and yMax
+     * @param window true if the range on the x-axis may exclude some points
+     * @return false if no point is known to be inside the range on the x-axis
+     */
+
+    boolean fitRange(float[] target, boolean window) {
+        target[2] = getMin(PointDistribution.AXIS.Y);
+        target[3] = getMax(PointDistribution.AXIS.Y);
+
+        PointStorage data = getStorage();
+        if (window && pointIndex.isSorted(data)) {
+            int from = PointIndex.lowerBound(data, target[0]);
+            int to = PointIndex.lowerBound(data, Math.nextUp(target[1]));
+            if (from >= to) {
+                return false;
+            }
+            pyramid.validate(data);
+            target[2] = data.getY(pyramid.rangeMin(data, from, to));
+            target[3] = data.getY(pyramid.rangeMax(data, from, to));
+        }
+        return size() > 0;
+    }
+
+    /**
+     * Returns true if the points appended since the last draw can be drawn alone, on top of the last draw,
+     * with {@link #drawAppended(Graphics)}. The caller must make sure that the component bounds, the viewport
+     * and the visible window haven't changed.
+     *
+     * @param range     the axis range that the distribution would be drawn with: xMin, xMax, yMin and yMax
+     * @param maxPoints the maximum amount of appended points
+     */
+
+    boolean canDrawAppended(float[] range, int maxPoints) {
+        PointStorage data = getStorage();
+        int appended = data.size() - drawnSize;
+        if (data.editVersion != drawnEditVersion || appended < 0 || appended > maxPoints
+                || drawnAsDensity || quantileLines.length > 0 || overlays.length > 0 || !projection.isValid()) {
+            return false;
+        }
+        if (appended == 0) {
+            return true;
+        }
+        // the axis range must be the one of the last draw
+        return projection.hasRange(range[0], range[1], range[2], range[3])
+                && !isDensity(drawnPoints + appended);
+    }
+
+    /**
+     * @return true if points have been added since the last draw
+     */
+
+    boolean hasAppended() {
+        return getStorage().size() != drawnSize;
+    }
+
+    /**
+     * Draws only the points appended since the last draw, with the projection of the last draw.
+     * See {@link #canDrawAppended(float[], int)}.
+     * <br>
+     * Time required: T(k), where k is the number of appended points
+     *
+     * @param graphics the {@link Graphics} of the last draw
+     */
+
+    void drawAppended(Graphics graphics) {
+        PointStorage data = getStorage();
+        int size = data.size();
+        int from = Math.max(0, drawnSize - 1);
+        int points = size - from;
+        if (drawnSize == size) {
+            return;
+        }
+        if (appendedVertices.length < 2 * points) {
+            appendedVertices = new float[Math.max(2 * points, 2 * appendedVertices.length)];
+        }
+        for (int i = from; i < size; i++) {
+            projection.project(data.getX(i), data.getY(i), screenPosition);
+            appendedVertices[2 * (i - from)] = screenPosition[0];
+            appendedVertices[2 * (i - from) + 1] = screenPosition[1];
+        }
+
+        if (enableLine) {
+            graphics
+                    .setShapeBorderWidth(lineWidth)
+                    .setShapeBorderColor(lineColor)
+                    .setShapeColor(lineColor);
+            shapeBatcher.drawPolyline(graphics, appendedVertices, points);
+        }
+
+        if (enablePoint) {
+            // the first vertex has already been drawn, unless nothing had been drawn
+            int skip = from == drawnSize ? 0 : 1;
+            System.arraycopy(appendedVertices, 2 * skip, appendedVertices, 0, 2 * (points - skip));
+            graphics
+                    .setShapeColor(pointColor)
+                    .setShapeBorderWidth(0);
+            shapeBatcher.drawMarkers(graphics, appendedVertices, points - skip, geometryMarker, pointSize);
+        }
+        drawnSize = size;
+    }
 
     /**
      * Draws the data distribution on the given Graphic.
+     * <br>
+     * When the distribution has more points than the viewport can show, only a decimated subset
+     * (see {@link #setDecimation(DECIMATION)}) is drawn. Projected points are cached (see {@link ScreenProjection})
+     * and submitted as a few polyline and marker batches.
      *
      * @param graphics a {@link Graphics} used to display the distribution
      * @throws NullPointerException if {@code graphics == null}
      */
 
     public void draw(Graphics graphics, float[] bounds, float width, float height, float rotation) {
+        draw(graphics, bounds, width, height, rotation, 0f, 1f);
+    }
+
+    /**
+     * Draws the visible window of the data distribution on the given Graphic.
+     * <br>
+     * The window is expressed as a fraction of the x-axis range: {@code [0, 1]} shows all the points.
+     * When the points are sorted on the x-axis, only the points inside the window are considered and, if they
+     * are more than the viewport can show, they are rendered from a {@link MinMaxPyramid} in O(pixels).
+     * The y-axis fits the visible points (see {@link #getVisibleRange(float, float, float[])}).
+     * Above a threshold, points are rendered as a density heatmap (see {@link #setDensityThreshold(int)}).
+     *
+     * @param graphics  a {@link Graphics} used to display the distribution
+     * @param viewStart the start of the visible window between [0, 1]
+     * @param viewEnd   the end of the visible window between [viewStart, 1]
+     * @throws NullPointerException if {@code graphics == null}
+     */
+
+    public void draw(Graphics graphics, float[] bounds, float width, float height, float rotation,
+                     float viewStart, float viewEnd) {
         Objects.requireNonNull(graphics);
+        getVisibleRange(viewStart, viewEnd, visibleRange);
+        drawRange(graphics, bounds, width, height, rotation,
+                visibleRange[0], visibleRange[1], visibleRange[2], visibleRange[3], viewStart > 0f || viewEnd < 1f);
+    }
 
-        float xMin = getMin(PointDistribution.AXIS.X);
-        float yMin = getMin(PointDistribution.AXIS.Y);
-        float xMax = getMax(PointDistribution.AXIS.X);
-        float yMax = getMax(PointDistribution.AXIS.Y);
+    /**
+     * Draws the data distribution on the given Graphic, with the given axis range instead of its own one.
+     * Distributions drawn with the same range share the same scale (see {@link XChart#enableSharedScale(boolean)}).
+     * <br>
+     * When the points are sorted on the x-axis, only the points inside the range on the x-axis are considered.
+     *
+     * @param graphics a {@link Graphics} used to display the distribution
+     * @param xMin     the value on the x-axis of the left viewport edge
+     * @param xMax     the value on the x-axis of the right viewport edge
+     * @param yMin     the value on the y-axis of the bottom viewport edge
+     * @param yMax     the value on the y-axis of the top viewport edge
+     * @throws NullPointerException if {@code graphics == null}
+     */
+
+    public void draw(Graphics graphics, float[] bounds, float width, float height, float rotation,
+                     float xMin, float xMax, float yMin, float yMax) {
+        Objects.requireNonNull(graphics);
+        boolean window = xMin > getMin(PointDistribution.AXIS.X) || xMax < getMax(PointDistribution.AXIS.X);
+        drawRange(graphics, bounds, width, height, rotation, xMin, xMax, yMin, yMax, window);
+    }
+
+    /**
+     * Helper function. Draws the points with the given axis range.
+     *
+     * @param window true if the range on the x-axis may exclude some points
+     */
+
+    private void drawRange(Graphics graphics, float[] bounds, float width, float height, float rotation,
+                           float viewXMin, float viewXMax, float yMin, float yMax, boolean window) {
+        PointStorage data = getStorage();
+        int from = 0;
+        int to = data.size();
+        boolean sorted = pointIndex.isSorted(data);
+        if (window && sorted) {
+            from = Math.max(0, PointIndex.lowerBound(data, viewXMin) - 1);
+            to = Math.min(to, PointIndex.lowerBound(data, viewXMax) + 1);
+        }
+
+        // decimation assumes points sorted on the x-axis: scatter points are all drawn
+        decimator.update(data, (int) width, sorted ? decimation : DECIMATION.NONE, from, to, pyramid);
+        projection.project(data, decimator, bounds, width, height, rotation, viewXMin, viewXMax, yMin, yMax);
+        float[] screenVertices = projection.vertices();
+        int points = projection.size();
 
         // draws line between points
         if (enableLine) {
             graphics
                     .setShapeBorderWidth(lineWidth)
+                    .setShapeBorderColor(lineColor)
                     .setShapeColor(lineColor);
-
-            for (int i = 0; i < size() - 1; i++) {
-                float pointX = get(i, PointDistribution.AXIS.X);
-                float pointY = get(i, PointDistribution.AXIS.Y);
-                float nextPointX = get(i + 1, PointDistribution.AXIS.X);
-                float nextPointY = get(i + 1, PointDistribution.AXIS.Y);
-
-                calculateMarkerPosition(markerPosition,
-                        bounds, width, height,
-                        pointX, pointY, rotation,
-                        xMin, xMax, yMin, yMax);
-
-                calculateMarkerPosition(nextMarkerPosition,
-                        bounds, width, height,
-                        nextPointX, nextPointY, rotation,
-                        xMin, xMax, yMin, yMax);
-
-                graphics.drawShape(null, 2,
-                        markerPosition[0], markerPosition[1],
-                        nextMarkerPosition[0], nextMarkerPosition[1]
-                );
-            }
+            shapeBatcher.drawPolyline(graphics, screenVertices, points);
         }
 
+        drawnSize = data.size();
+        drawnEditVersion = data.editVersion;
+        drawnPoints = to - from;
+        drawnAsDensity = isDensity(drawnPoints);
+
         // draws point
-        if (enablePoint) {
+        if (drawnAsDensity) {
+            if (densityGrid == null) {
+                densityGrid = new DensityGrid();
+            }
+            Image density = densityGrid.update(data, from, to, (int) Math.ceil(width), (int) Math.ceil(height),
+                    viewXMin, viewXMax, yMin, yMax, pointColor, imageBackend);
+            graphics.drawImage(density,
+                    bounds[0] + 0.5f * bounds[2], bounds[1] + 0.5f * bounds[3],
+                    width, height, rotation);
+        } else if (enablePoint) {
             graphics
                     .setShapeColor(pointColor)
                     .setShapeBorderWidth(0);
+            shapeBatcher.drawMarkers(graphics, screenVertices, points, geometryMarker, pointSize);
+        }
 
-            for (int i = 0; i < size(); i++) {
-                float pointX = get(i, PointDistribution.AXIS.X);
-                float pointY = get(i, PointDistribution.AXIS.Y);
-
-                calculateMarkerPosition(markerPosition,
-                        bounds, width, height,
-                        pointX, pointY, rotation,
-                        xMin, xMax, yMin, yMax);
+        // draws overlays
+        for (Overlay overlay : overlays) {
+            overlay.validate(data);
+            overlay.series.drawRange(graphics, bounds, width, height, rotation,
+                    viewXMin, viewXMax, yMin, yMax, true);
+        }
 
-                markerTransform
-                        .setTranslation(markerPosition[0], markerPosition[1])
-                        .setScale(pointSize, pointSize);
-                graphics.drawShape(markerTransform, geometryMarker.vertices(), geometryMarker.toArray());
+        // draws quantile lines
+        if (quantileLines.length > 0 && points > 0) {
+            graphics
+                    .setShapeBorderWidth(1)
+                    .setShapeBorderColor(quantileLineColor)
+                    .setShapeColor(quantileLineColor);
+            for (double q : quantileLines) {
+                float y = getQuantile(PointDistribution.AXIS.Y, q);
+                projection.project(viewXMin, y, screenPosition);
+                quantileLineVertices[0] = screenPosition[0];
+                quantileLineVertices[1] = screenPosition[1];
+                projection.project(viewXMax, y, screenPosition);
+                quantileLineVertices[2] = screenPosition[0];
+                quantileLineVertices[3] = screenPosition[1];
+                shapeBatcher.drawPolyline(graphics, quantileLineVertices, 2);
             }
         }
     }
@@ -0,0 +1,321 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Histogram counts values into bins, so that millions of samples are summarized by a few counters.
+ * <br>
+ * Two bin layouts are available:
+ * <ul>
+ *     <li>LINEAR: bins of the same width between a minimum and a maximum value;</li>
+ *     <li>LOG_LINEAR: HDR-style bins. The range is split into powers of two, starting from the lowest value,
+ *     and each power of two is split into the same amount of linear sub-bins, so that the relative error is
+ *     the same on the whole range.</li>
+ * </ul>
+ * Values out of the range are counted apart (see {@link #getUnderflow()} and {@link #getOverflow()}).
+ * Histograms with the same layout can be merged.
+ * <br>
+ * Time required to add a value: O(1)
+ */
+
+public final class Histogram {
+
+    /**
+     * Bin layout
+     */
+
+    public enum BINNING {LINEAR, LOG_LINEAR}
+
+    private final BINNING binning;
+    private final float min;
+    private final float max;
+    private final float binWidth;
+    private final int subBins;
+    private final long[] counts;
+    private long underflow;
+    private long overflow;
+    private long totalCount;
+    private long maxCount;
+
+    private Histogram(BINNING binning, float min, float max, float binWidth, int subBins, int bins) {
+        this.binning = binning;
+        this.min = min;
+        this.max = max;
+        this.binWidth = binWidth;
+        this.subBins = subBins;
+        counts = new long[bins];
+    }
+
+    /**
+     * Creates a new Histogram with bins of the same width.
+     *
+     * @param min  the lower bound of the first bin
+     * @param max  the upper bound of the last bin
+     * @param bins the number of bins
+     * @return a new Histogram
+     * @throws IllegalArgumentException if {@code bins < 1 || min >= max}
+     */
+
+    public static Histogram linear(float min, float max, int bins) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("bins can not be < 1");
+        }
+        if (!(min < max)) {
+            throw new IllegalArgumentException("min must be < max");
+        }
+        return new Histogram(BINNING.LINEAR, min, max, (max - min) / bins, 0, bins);
+    }
+
+    /**
+     * Creates a new Histogram with HDR-style log-linear bins.
+     * <br>
+     * The relative width of a bin is at most {@code 1 / subBins}, e.g. 1% with 100 sub-bins.
+     *
+     * @param lowest  the lower bound of the first bin
+     * @param highest the largest value that must fall in the range
+     * @param subBins the number of linear bins in each power of two
+     * @return a new Histogram
+     * @throws IllegalArgumentException if {@code lowest <= 0 || lowest >= highest || subBins < 1}
+     */
+
+    public static Histogram logLinear(float lowest, float highest, int subBins) {
+        if (!(lowest > 0)) {
+            throw new IllegalArgumentException("lowest must be > 0");
+        }
+        if (!(lowest < highest)) {
+            throw new IllegalArgumentException("lowest must be < highest");
+        }
+        if (subBins < 1) {
+            throw new IllegalArgumentException("subBins can not be < 1");
+        }
+        int ranges = Math.getExponent((double) highest / lowest) + 1;
+        float max = (float) Math.scalb((double) lowest, ranges);
+        return new Histogram(BINNING.LOG_LINEAR, lowest, max, 0f, subBins, ranges * subBins);
+    }
+
+    /**
+     * Returns the bin of the given value.
+     * <br>
+     * Time required: O(1)
+     *
+     * @param value a value
+     * @return the bin index between [0, bins()), -1 if the value is below the range,
+     * {@code bins()} if it is above the range or NaN
+     */
+
+    public int binOf(float value) {
+        if (value < min) {
+            return -1;
+        }
+        if (!(value <= max)) {
+            return counts.length;
+        }
+        int result;
+        if (binning == BINNING.LINEAR) {
+            result = (int) ((value - min) / binWidth);
+        } else {
+            double ratio = (double) value / min;
+            int range = Math.getExponent(ratio);
+            int subBin = (int) ((Math.scalb(ratio, -range) - 1d) * subBins);
+            result = range * subBins + Math.min(subBin, subBins - 1);
+        }
+        // the maximum value belongs to the last bin
+        result = Math.min(result, counts.length - 1);
+
+        // keeps the bin consistent with the rounded bounds
+        if (result > 0 && value < getLowerBound(result)) {
+            result--;
+        } else if (result < counts.length - 1 && value >= getLowerBound(result + 1)) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a value.
+     * <br>
+     * Time required: O(1)
+     *
+     * @param value the value to add
+     */
+
+    public void add(float value) {
+        add(value, 1L);
+    }
+
+    /**
+     * Adds a value several times.
+     * <br>
+     * Time required: O(1)
+     *
+     * @param value the value to add
+     * @param count the number of occurrences of the value
+     * @throws IllegalArgumentException if {@code count < 0}
+     */
+
+    public void add(float value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count can not be < 0");
+        }
+        int bin = binOf(value);
+        if (bin == -1) {
+            underflow += count;
+        } else if (bin == counts.length) {
+            overflow += count;
+        } else {
+            counts[bin] += count;
+            if (counts[bin] > maxCount) {
+                maxCount = counts[bin];
+            }
+        }
+        totalCount += count;
+    }
+
+    /**
+     * Adds the values of a distribution on the specified axis.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param distribution a not null {@link PointDistribution}
+     * @param axis         the not null {@link PointDistribution.AXIS}
+     * @return this Histogram
+     * @throws NullPointerException if {@code distribution == null || axis == null}
+     */
+
+    public Histogram addAll(PointDistribution distribution, PointDistribution.AXIS axis) {
+        Objects.requireNonNull(axis);
+        PointStorage data = distribution.getStorage();
+        int size = data.size();
+        for (int i = 0; i < size; i++) {
+            add(axis == PointDistribution.AXIS.X ? data.getX(i) : data.getY(i));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the counts of another Histogram with the same layout to this one.
+     * <br>
+     * Time required: T(bins)
+     *
+     * @param other a not null Histogram
+     * @return this Histogram
+     * @throws NullPointerException     if {@code other == null}
+     * @throws IllegalArgumentException if the given histogram has a different layout
+     */
+
+    public Histogram merge(Histogram other) {
+        Objects.requireNonNull(other);
+        if (other.binning != binning || Float.compare(other.min, min) != 0 || Float.compare(other.max, max) != 0
+                || other.subBins != subBins || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("histograms must have the same layout");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+            if (counts[i] > maxCount) {
+                maxCount = counts[i];
+            }
+        }
+        underflow += other.underflow;
+        overflow += other.overflow;
+        totalCount += other.totalCount;
+        return this;
+    }
+
+    /**
+     * Removes all counts.
+     */
+
+    public void clear() {
+        Arrays.fill(counts, 0L);
+        underflow = 0;
+        overflow = 0;
+        totalCount = 0;
+        maxCount = 0;
+    }
+
+    /**
+     * @return the bin layout
+     */
+
+    public BINNING getBinning() {
+        return binning;
+    }
+
+    /**
+     * @return the number of bins
+     */
+
+    public int bins() {
+        return counts.length;
+    }
+
+    /**
+     * @param bin the bin index between [0, bins())
+     * @return the number of values in the specified bin
+     * @throws IndexOutOfBoundsException if {@code bin < 0 || bin >= bins()}
+     */
+
+    public long getCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * @param bin the bin index between [0, bins())
+     * @return the lower bound (included) of the specified bin
+     * @throws IndexOutOfBoundsException if {@code bin < 0 || bin >= bins()}
+     */
+
+    public float getLowerBound(int bin) {
+        PointStorage.checkIndex(bin, counts.length);
+        if (binning == BINNING.LINEAR) {
+            return min + bin * binWidth;
+        }
+        int range = bin / subBins;
+        int subBin = bin % subBins;
+        return (float) Math.scalb(min * (1d + (double) subBin / subBins), range);
+    }
+
+    /**
+     * @param bin the bin index between [0, bins())
+     * @return the upper bound (excluded) of the specified bin
+     * @throws IndexOutOfBoundsException if {@code bin < 0 || bin >= bins()}
+     */
+
+    public float getUpperBound(int bin) {
+        PointStorage.checkIndex(bin, counts.length);
+        return bin == counts.length - 1 ? max : getLowerBound(bin + 1);
+    }
+
+    /**
+     * @return the largest count among the bins
+     */
+
+    public long getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @return the number of values added, including the ones out of the range
+     */
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the number of values below the range
+     */
+
+    public long getUnderflow() {
+        return underflow;
+    }
+
+    /**
+     * @return the number of values above the range or NaN
+     */
+
+    public long getOverflow() {
+        return overflow;
+    }
+}
@@ -0,0 +1,53 @@
+package uiax.components.chart;
+
+import uia.core.rendering.image.Image;
+import uia.core.rendering.Graphics;
+
+/**
+ * ImageBackend bridges the chart components and the platform image implementation.
+ * <br>
+ * Components render into platform-independent ARGB pixel buffers, or into offscreen layers, that the backend
+ * turns into the native object of an {@link Image}, so that they can be drawn with {@link Graphics#drawImage}.
+ * Components that need images are given a backend explicitly, and features that need one are disabled without it.
+ * {@link uiax.components.chart.awt.AWTImageBackend} is the Swing implementation; other platforms must supply
+ * their own.
+ */
+
+public interface ImageBackend {
+
+    /**
+     * Copies a region of ARGB pixels into the given image. The native image is created, or replaced,
+     * when it doesn't have the specified dimension; in that case, the whole buffer is copied.
+     *
+     * @param image        a not null {@link Image}
+     * @param width        the image width
+     * @param height       the image height
+     * @param pixels       the ARGB pixels, row by row, of length {@code width * height}
+     * @param x            the position on the x-axis of the region
+     * @param y            the position on the y-axis of the region
+     * @param regionWidth  the region width
+     * @param regionHeight the region height
+     */
+
+    void writePixels(Image image, int width, int height, int[] pixels,
+                     int x, int y, int regionWidth, int regionHeight);
+
+    /**
+     * Returns a {@link Graphics} that draws into the given image. The native image is created, or replaced,
+     * when it doesn't have the specified dimension.
+     * <br>
+     * Drawing coordinates are shifted by the given origin, so that the image holds the region of the screen
+     * that starts at the origin and components can draw into it with screen coordinates.
+     * The returned Graphics must be disposed after use.
+     *
+     * @param image   a not null {@link Image}
+     * @param width   the image width
+     * @param height  the image height
+     * @param originX the position on the x-axis, in screen coordinates, of the image top left corner
+     * @param originY the position on the y-axis, in screen coordinates, of the image top left corner
+     * @param clear   true to make the image transparent before drawing
+     * @return a new {@link Graphics}
+     */
+
+    Graphics createGraphics(Image image, int width, int height, float originX, float originY, boolean clear);
+}
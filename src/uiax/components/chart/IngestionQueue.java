@@ -0,0 +1,171 @@
+package uiax.components.chart;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IngestionQueue is a bounded, lock-free, multi-producer single-consumer queue of points.
+ * <br>
+ * Any thread can offer points without locking, while the render thread drains them, in batch, into a
+ * {@link PointDistribution}. Points are stored in two primitive ring buffers, so no object is allocated for each
+ * point. Each slot carries a sequence number that tells producers and the consumer whether the slot is free or
+ * holds a point (bounded queue by D. Vyukov).
+ * <br>
+ * Backpressure: when the queue is full, {@link #offer(float, float)} doesn't block and returns false.
+ * Rejected points are counted (see {@link #rejected()}).
+ */
+
+public final class IngestionQueue {
+    private static final int DRAIN_BATCH = 1024;
+
+    private final float[] xs;
+    private final float[] ys;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long head;
+
+    // consumer-side scratch buffers
+    private final float[] drainX;
+    private final float[] drainY;
+
+    /**
+     * Creates a new IngestionQueue.
+     *
+     * @param capacity the maximum amount of pending points; it is rounded up to the next power of two
+     * @throws IllegalArgumentException if {@code capacity < 1 || capacity > 2^30}
+     */
+
+    public IngestionQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity can not be < 1");
+        }
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity can not be > 2^30");
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        mask = slots - 1;
+        xs = new float[slots];
+        ys = new float[slots];
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+
+        int batch = Math.min(slots, DRAIN_BATCH);
+        drainX = new float[batch];
+        drainY = new float[batch];
+    }
+
+    /**
+     * Offers a point. This method can be called by any thread.
+     *
+     * @param x the point value on the x-axis
+     * @param y the point value on the y-axis
+     * @return true if the point has been queued; false if the queue is full
+     */
+
+    public boolean offer(float x, float y) {
+        long position = tail.get();
+        int slot;
+        while (true) {
+            slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot still holds a point not drained
+                rejected.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        xs[slot] = x;
+        ys[slot] = y;
+        // publishes the point to the consumer
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves the queued points into the given distribution, in batches.
+     * At most {@link #capacity()} points are moved, so that fast producers can't stall the caller.
+     * This method must be called by a single thread at a time, usually the render thread.
+     *
+     * @param target a not null {@link PointDistribution}
+     * @return the number of moved points
+     * @throws NullPointerException if {@code target == null}
+     */
+
+    public int drainTo(PointDistribution target) {
+        Objects.requireNonNull(target);
+        long position = head;
+        int result = 0;
+        int length;
+        do {
+            length = 0;
+            while (length < drainX.length) {
+                int slot = (int) position & mask;
+                if (sequences.get(slot) != position + 1) {
+                    break;
+                }
+                drainX[length] = xs[slot];
+                drainY[length] = ys[slot];
+                length++;
+                // frees the slot for the producers
+                sequences.lazySet(slot, position + mask + 1);
+                position++;
+            }
+            if (length > 0) {
+                target.addAll(drainX, drainY, 0, length);
+                result += length;
+            }
+        } while (length == drainX.length && result < capacity());
+        head = position;
+        return result;
+    }
+
+    /**
+     * @return an estimate of the number of pending points
+     */
+
+    public int size() {
+        long result = tail.get() - head;
+        return (int) Math.max(0, Math.min(result, capacity()));
+    }
+
+    /**
+     * @return the maximum amount of pending points
+     */
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of points accepted since the creation of this queue
+     */
+
+    public long accepted() {
+        return tail.get();
+    }
+
+    /**
+     * @return the number of points rejected because the queue was full
+     */
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
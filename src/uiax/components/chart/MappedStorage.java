@@ -0,0 +1,459 @@
+package uiax.components.chart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * MappedStorage stores points in a memory-mapped file, so that a distribution larger than the heap can be
+ * browsed without loading it.
+ * <br>
+ * The file starts with a header of 128 bytes, followed by the points as interleaved little-endian float pairs
+ * (x, y). The file is mapped in segments of 2^27 points (1 GiB), so it can hold up to {@link Integer#MAX_VALUE}
+ * points; pages are loaded by the operating system only when they are read.
+ * <br>
+ * The header holds the amount of points, the cached statistics (extremes, mean and squared deviations) and
+ * whether the points are sorted on the x-axis, so opening a file costs O(1). Statistics are written by
+ * {@link #flush()} and {@link #close()}: when a file hasn't been flushed after a change, they are recalculated
+ * with a single scan on opening.
+ * <br>
+ * The file grows in chunks, so it may be larger than its points. It is trimmed when it's opened again in write
+ * mode rather than on closing, since some platforms (e.g. Windows) can't truncate a file while its mapped buffers
+ * haven't been garbage collected.
+ * <br>
+ * When drawn, the points are summarized by a coarse level-of-detail structure (see {@link #lodBaseLevel()}),
+ * built with a single scan on the first draw and then updated on append: frames, zooming, resizing and appending
+ * don't scan the points again.
+ * <br>
+ * Time required to append or read a point: O(1). Removing a point shifts the following ones and costs T(n).
+ */
+
+public final class MappedStorage extends PointStorage implements Closeable {
+    private static final int MAGIC = 0x55494158;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 128;
+    private static final int POINT_BYTES = 8;
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_POINTS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_POINTS - 1;
+    private static final int INIT_CAPACITY = 1 << 16;
+    private static final int SCAN_CHUNK = 1 << 20;
+    private static final int LOD_BASE_LEVEL = 8;
+
+    // header layout
+    private static final int SIZE_OFFSET = 8;
+    private static final int CLEAN_OFFSET = 16;
+    private static final int EXTREMES_OFFSET = 24;
+    private static final int MEAN_OFFSET = 40;
+    private static final int M2_OFFSET = 56;
+    private static final int SORTED_OFFSET = 72;
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int capacity;
+    private int size;
+    private boolean clean;
+    private boolean sorted = true;
+
+    /**
+     * Opens a point file. A writable storage creates the file if it doesn't exist.
+     *
+     * @param file     a not null file path
+     * @param readOnly true to open the file in read-only mode
+     * @throws NullPointerException if {@code file == null}
+     * @throws IOException          if the file can't be opened or it isn't a valid point file
+     */
+
+    public MappedStorage(Path file, boolean readOnly) throws IOException {
+        Objects.requireNonNull(file);
+        this.readOnly = readOnly;
+        channel = readOnly
+                ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Helper function. Reads the header and maps the stored points.
+     */
+
+    private void open() throws IOException {
+        if (!readOnly) {
+            trim();
+        }
+        long length = channel.size();
+        if (length == 0 && !readOnly) {
+            header = map(0, HEADER_BYTES);
+            header.putInt(0, MAGIC).putInt(4, FORMAT);
+            writeHeader();
+            return;
+        }
+        if (length < HEADER_BYTES) {
+            throw new IOException("not a point file");
+        }
+
+        header = map(0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+            throw new IOException("not a point file");
+        }
+        long storedSize = header.getLong(SIZE_OFFSET);
+        if (storedSize < 0 || storedSize > Integer.MAX_VALUE || HEADER_BYTES + storedSize * POINT_BYTES > length) {
+            throw new IOException("truncated point file");
+        }
+        size = (int) storedSize;
+        mapCapacity(size);
+
+        if (header.getInt(CLEAN_OFFSET) == 1) {
+            readStatistics();
+            // files written before the flag existed are checked by scanning them
+            sorted = header.getInt(SORTED_OFFSET) == 1;
+            clean = true;
+        } else {
+            summarize();
+            if (!readOnly) {
+                writeHeader();
+            }
+        }
+    }
+
+    /**
+     * Helper function. Trims the file to the points stored in its header, before any region is mapped.
+     * The trim is skipped when the platform refuses it, e.g. because a previous storage of the same file still
+     * has mapped buffers; the file is then trimmed on a later opening.
+     */
+
+    private void trim() throws IOException {
+        long length = channel.size();
+        if (length < HEADER_BYTES) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE_OFFSET + 8).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return;
+            }
+        }
+        long storedSize = buffer.getLong(SIZE_OFFSET);
+        long storedLength = HEADER_BYTES + storedSize * POINT_BYTES;
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == FORMAT
+                && storedSize >= 0 && storedSize <= Integer.MAX_VALUE && storedLength < length) {
+            try {
+                channel.truncate(storedLength);
+            } catch (IOException e) {
+                // the file keeps its unused tail until a later opening
+            }
+        }
+    }
+
+    /**
+     * Helper function. Maps a region of the file in little-endian order.
+     */
+
+    private MappedByteBuffer map(long position, long length) throws IOException {
+        MappedByteBuffer result = channel.map(
+                readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, position, length);
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        return result;
+    }
+
+    /**
+     * Helper function. Maps the segments needed to hold the given amount of points.
+     * Full segments are mapped once; only the last one is mapped again when it grows.
+     */
+
+    private void mapCapacity(int newCapacity) throws IOException {
+        int count = newCapacity == 0 ? 0 : ((newCapacity - 1) >>> SEGMENT_SHIFT) + 1;
+        MappedByteBuffer[] newSegments = Arrays.copyOf(segments, count);
+        for (int s = 0; s < count; s++) {
+            int points = Math.min(SEGMENT_POINTS, newCapacity - s * SEGMENT_POINTS);
+            if (newSegments[s] == null || newSegments[s].capacity() != points * POINT_BYTES) {
+                long position = HEADER_BYTES + (long) s * SEGMENT_POINTS * POINT_BYTES;
+                newSegments[s] = map(position, (long) points * POINT_BYTES);
+            }
+        }
+        segments = newSegments;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Helper function. Makes sure that the mapped region can hold at least the specified amount of points.
+     * The file grows with an amortized doubling policy.
+     */
+
+    private void ensureCapacity(long minCapacity) {
+        if (minCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("storage can not hold more than " + Integer.MAX_VALUE + " points");
+        }
+        if (minCapacity > capacity) {
+            long newCapacity = Math.max(minCapacity, Math.max(INIT_CAPACITY, 2L * capacity));
+            try {
+                mapCapacity((int) Math.min(Integer.MAX_VALUE, newCapacity));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Helper function. Throws an exception if this storage is read-only.
+     */
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("read-only storage");
+        }
+    }
+
+    /**
+     * Helper function. Stores the amount of points and marks the cached statistics as stale.
+     */
+
+    private void touch() {
+        header.putLong(SIZE_OFFSET, size);
+        if (clean) {
+            header.putInt(CLEAN_OFFSET, 0);
+            clean = false;
+        }
+    }
+
+    /**
+     * Helper function. Writes a point without checking its index.
+     */
+
+    private void put(int i, float x, float y) {
+        MappedByteBuffer segment = segments[i >>> SEGMENT_SHIFT];
+        int position = (i & SEGMENT_MASK) * POINT_BYTES;
+        segment.putFloat(position, x);
+        segment.putFloat(position + 4, y);
+    }
+
+    /**
+     * Helper function. Reads a coordinate without checking the point index.
+     */
+
+    private float read(int i, int axis) {
+        return segments[i >>> SEGMENT_SHIFT].getFloat((i & SEGMENT_MASK) * POINT_BYTES + 4 * axis);
+    }
+
+    /**
+     * Helper function. Recalculates the statistics of the stored points in chunks.
+     * <br>
+     * Time required: T(n)
+     */
+
+    private void summarize() {
+        statistics.clear();
+        sorted = true;
+        float[] xs = new float[Math.min(size, SCAN_CHUNK)];
+        float[] ys = new float[xs.length];
+        for (int from = 0; from < size; from += SCAN_CHUNK) {
+            int length = Math.min(SCAN_CHUNK, size - from);
+            for (int j = 0; j < length; j++) {
+                xs[j] = read(from + j, 0);
+                ys[j] = read(from + j, 1);
+                if (from + j > 0 && xs[j] < read(from + j - 1, 0)) sorted = false;
+            }
+            statistics.addAll(xs, ys, 0, length);
+        }
+    }
+
+    /**
+     * Helper function. Restores the statistics cached in the header.
+     */
+
+    private void readStatistics() {
+        double[] mean = {header.getDouble(MEAN_OFFSET), header.getDouble(MEAN_OFFSET + 8)};
+        double[] m2 = {header.getDouble(M2_OFFSET), header.getDouble(M2_OFFSET + 8)};
+        statistics.restore(size, mean, m2);
+        statistics.setExtremes(
+                header.getFloat(EXTREMES_OFFSET), header.getFloat(EXTREMES_OFFSET + 4),
+                header.getFloat(EXTREMES_OFFSET + 8), header.getFloat(EXTREMES_OFFSET + 12));
+    }
+
+    /**
+     * Helper function. Writes the amount of points and the statistics to the header.
+     */
+
+    private void writeHeader() {
+        if (statistics.isExtremesCorrupted()) {
+            extractExtremes();
+        }
+        header.putLong(SIZE_OFFSET, size)
+                .putFloat(EXTREMES_OFFSET, statistics.getMin(0))
+                .putFloat(EXTREMES_OFFSET + 4, statistics.getMin(1))
+                .putFloat(EXTREMES_OFFSET + 8, statistics.getMax(0))
+                .putFloat(EXTREMES_OFFSET + 12, statistics.getMax(1))
+                .putDouble(MEAN_OFFSET, statistics.getExactMean(0))
+                .putDouble(MEAN_OFFSET + 8, statistics.getExactMean(1))
+                .putDouble(M2_OFFSET, statistics.getSquaredDeviations(0))
+                .putDouble(M2_OFFSET + 8, statistics.getSquaredDeviations(1))
+                .putInt(SORTED_OFFSET, sorted ? 1 : 0)
+                .putInt(CLEAN_OFFSET, 1);
+        clean = true;
+    }
+
+    @Override
+    void add(float x, float y) {
+        checkWritable();
+        ensureCapacity(size + 1L);
+        if (size > 0 && x < read(size - 1, 0)) sorted = false;
+        put(size, x, y);
+        size++;
+        statistics.add(x, y);
+        touch();
+    }
+
+    /**
+     * Appends a sequence of points, growing the file at most once.
+     */
+
+    @Override
+    void addAll(float[] x, float[] y, int offset, int length) {
+        checkWritable();
+        checkRange(x, y, offset, length);
+        ensureCapacity((long) size + length);
+        for (int i = 0; i < length; i++) {
+            if (size + i > 0 && x[offset + i] < (i == 0 ? read(size - 1, 0) : x[offset + i - 1])) sorted = false;
+            put(size + i, x[offset + i], y[offset + i]);
+        }
+        size += length;
+        statistics.addAll(x, y, offset, length);
+        touch();
+    }
+
+    @Override
+    void set(int i, float x, float y) {
+        checkWritable();
+        checkIndex(i, size);
+        statistics.remove(read(i, 0), read(i, 1));
+        if ((i > 0 && x < read(i - 1, 0)) || (i < size - 1 && x > read(i + 1, 0))) sorted = false;
+        put(i, x, y);
+        statistics.add(x, y);
+        touch();
+    }
+
+    /**
+     * Removes the specified point and shifts the following points to the left.
+     */
+
+    @Override
+    void remove(int i) {
+        checkWritable();
+        checkIndex(i, size);
+        statistics.remove(read(i, 0), read(i, 1));
+        for (int j = i; j < size - 1; j++) {
+            put(j, read(j + 1, 0), read(j + 1, 1));
+        }
+        size--;
+        touch();
+    }
+
+    /**
+     * Removes all points. The file is trimmed on {@link #close()}.
+     */
+
+    @Override
+    void clear() {
+        checkWritable();
+        size = 0;
+        sorted = true;
+        statistics.clear();
+        touch();
+    }
+
+    /**
+     * Summarizes the mapped points with coarser buckets, so that the level-of-detail structure takes about
+     * 1/16 of a byte for each point instead of 4.
+     */
+
+    @Override
+    int lodBaseLevel() {
+        return LOD_BASE_LEVEL;
+    }
+
+    /**
+     * @return true if the points are known to be sorted on the x-axis; once a point breaks the order, they are
+     * considered unsorted until the storage is cleared
+     */
+
+    @Override
+    boolean isSortedOnX() {
+        return sorted;
+    }
+
+    @Override
+    public float getX(int i) {
+        checkIndex(i, size);
+        return read(i, 0);
+    }
+
+    @Override
+    public float getY(int i) {
+        checkIndex(i, size);
+        return read(i, 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if this storage can't be modified
+     */
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Writes the cached statistics to the header and forces the changes to the storage device.
+     * It does nothing on a read-only storage.
+     */
+
+    public void flush() {
+        if (!readOnly) {
+            writeHeader();
+            header.force();
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Flushes the changes and closes the file. The file isn't trimmed until it's opened again in write mode
+     * (see {@link MappedStorage}). The storage must not be used afterwards.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+            segments = new MappedByteBuffer[0];
+            capacity = 0;
+        } finally {
+            channel.close();
+        }
+    }
+}
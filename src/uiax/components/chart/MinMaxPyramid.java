@@ -0,0 +1,330 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * MinMaxPyramid is a multi-resolution level-of-detail structure for a {@link PointStorage}.
+ * <br>
+ * Level {@code L} splits the points into buckets of {@code 2^L} consecutive points and stores, for each bucket,
+ * the index of its minimum and of its maximum point on the y-axis. Rendering an index range from the level whose
+ * bucket count is close to the number of pixels costs O(pixels) instead of O(points in range).
+ * <br>
+ * Since buckets are aligned to powers of two, the pyramid is also a segment tree: the minimum and the maximum
+ * of any index range are found in O(log(n)) (see {@link #rangeMin(PointStorage, int, int)}).
+ * <br>
+ * The pyramid is updated incrementally in O(log(n)) for each appended point. Buckets are aligned to the sequence
+ * number of the points since the first one, so the eviction of the oldest points (see
+ * {@link PointStorage#evictsOldest()}) only discards the buckets they fill, in amortized O(1). Any other change
+ * (replacement or removal) forces a rebuild on the next use. A rebuild scans the points once for the first level
+ * and derives each following level from the previous one, in T(n).
+ * <br>
+ * Space required: about {@code 4} bytes for each point with buckets of 4 points on the first level;
+ * storages can choose coarser buckets (see {@link PointStorage#lodBaseLevel()}).
+ */
+
+final class MinMaxPyramid {
+    private static final int MAX_LEVEL = 31;
+
+    // sequence numbers of the bucket extremes; the first array element holds the bucket firstBucket[level]
+    private final int[][] minIndex = new int[MAX_LEVEL][];
+    private final int[][] maxIndex = new int[MAX_LEVEL][];
+    private final int[] firstBucket = new int[MAX_LEVEL];
+    private final int[] buckets = new int[MAX_LEVEL];
+    private int baseLevel = 2;
+    private int levels;
+    private int points;
+    private int shift;
+
+    private PointStorage storage;
+    private long editVersion = -1;
+    private long evicted;
+
+    /**
+     * Makes sure that the pyramid describes the given storage.
+     * <br>
+     * Time required: O(k * log(n)) where k is the number of points appended since the last call, T(n) on rebuild
+     */
+
+    public void validate(PointStorage data) {
+        int size = data.size();
+        long evictedPoints = storage == data ? data.evictedSince(editVersion, evicted) : -1;
+        if (evictedPoints < 0 || evictedPoints > points || points - evictedPoints > size
+                || (long) shift + evictedPoints + size >= Integer.MAX_VALUE) {
+            storage = data;
+            baseLevel = data.lodBaseLevel();
+            points = 0;
+            levels = 0;
+            shift = 0;
+            Arrays.fill(firstBucket, 0);
+            Arrays.fill(buckets, 0);
+            build(data, size);
+        } else {
+            // the buckets of the evicted points are discarded when the arrays are full
+            shift += (int) evictedPoints;
+            points -= (int) evictedPoints;
+        }
+        editVersion = data.editVersion;
+        evicted = data.evicted;
+        while (points < size) {
+            append(data, points++);
+        }
+    }
+
+    /**
+     * Helper function. Builds the pyramid of the given points, from the first level to the last one.
+     * <br>
+     * Time required: T(n)
+     */
+
+    private void build(PointStorage data, int size) {
+        while (baseLevel + levels < MAX_LEVEL && (1L << (baseLevel + levels)) <= size) {
+            int bucketCount = (int) ((size + (1L << (baseLevel + levels)) - 1) >> (baseLevel + levels));
+            // the arrays of a previous build are reused
+            if (minIndex[levels] == null || minIndex[levels].length < bucketCount) {
+                minIndex[levels] = new int[Math.max(16, bucketCount)];
+                maxIndex[levels] = new int[Math.max(16, bucketCount)];
+            }
+            int[] mins = minIndex[levels];
+            int[] maxs = maxIndex[levels];
+
+            if (levels == 0) {
+                int bucketSize = bucketSize(0);
+                for (int bucket = 0; bucket < bucketCount; bucket++) {
+                    int start = bucket * bucketSize;
+                    int end = Math.min(size, start + bucketSize);
+                    int min = start;
+                    int max = start;
+                    for (int i = start + 1; i < end; i++) {
+                        float y = data.getY(i);
+                        if (y < data.getY(min)) min = i;
+                        if (y > data.getY(max)) max = i;
+                    }
+                    mins[bucket] = min;
+                    maxs[bucket] = max;
+                }
+            } else {
+                // each bucket merges two buckets of the previous level
+                int[] childMins = minIndex[levels - 1];
+                int[] childMaxs = maxIndex[levels - 1];
+                int children = buckets[levels - 1];
+                for (int bucket = 0; bucket < bucketCount; bucket++) {
+                    int left = 2 * bucket;
+                    int min = childMins[left];
+                    int max = childMaxs[left];
+                    if (left + 1 < children) {
+                        if (data.getY(childMins[left + 1]) < data.getY(min)) min = childMins[left + 1];
+                        if (data.getY(childMaxs[left + 1]) > data.getY(max)) max = childMaxs[left + 1];
+                    }
+                    mins[bucket] = min;
+                    maxs[bucket] = max;
+                }
+            }
+            buckets[levels] = bucketCount;
+            levels++;
+        }
+        if (levels > 0) {
+            points = size;
+        }
+    }
+
+    /**
+     * Helper function. Adds the specified point to every level.
+     */
+
+    private void append(PointStorage data, int i) {
+        // creates the levels whose bucket size doesn't exceed the number of points
+        while (baseLevel + levels < MAX_LEVEL && (1L << (baseLevel + levels)) <= i + 1) {
+            // the arrays of a previous build are reused
+            if (minIndex[levels] == null) {
+                minIndex[levels] = new int[16];
+                maxIndex[levels] = new int[16];
+            }
+            // a new level summarizes the points already appended
+            firstBucket[levels] = shift >> (baseLevel + levels);
+            buckets[levels] = firstBucket[levels];
+            for (int j = 0; j < i; j++) {
+                update(data, levels, j);
+            }
+            levels++;
+        }
+
+        for (int level = 0; level < levels; level++) {
+            update(data, level, i);
+        }
+    }
+
+    /**
+     * Helper function. Updates the bucket of the given level that contains the specified point.
+     */
+
+    private void update(PointStorage data, int level, int i) {
+        int sequence = shift + i;
+        int bucket = sequence >> (baseLevel + level);
+        if (bucket == buckets[level]) {
+            int position = bucket - firstBucket[level];
+            if (position == minIndex[level].length) {
+                int discarded = (shift >> (baseLevel + level)) - firstBucket[level];
+                if (discarded >= position / 2) {
+                    // moves the buckets that hold points to the start of the arrays
+                    System.arraycopy(minIndex[level], discarded, minIndex[level], 0, position - discarded);
+                    System.arraycopy(maxIndex[level], discarded, maxIndex[level], 0, position - discarded);
+                    firstBucket[level] += discarded;
+                    position -= discarded;
+                } else {
+                    minIndex[level] = Arrays.copyOf(minIndex[level], 2 * position);
+                    maxIndex[level] = Arrays.copyOf(maxIndex[level], 2 * position);
+                }
+            }
+            minIndex[level][position] = sequence;
+            maxIndex[level][position] = sequence;
+            buckets[level]++;
+        } else {
+            int position = bucket - firstBucket[level];
+            if (minIndex[level][position] < shift || maxIndex[level][position] < shift) {
+                // the bucket holds evicted points: its extremes are found again from the previous levels
+                int start = Math.max(0, bucketStart(level, bucket));
+                minIndex[level][position] = shift + rangeExtreme(data, start, i + 1, true);
+                maxIndex[level][position] = shift + rangeExtreme(data, start, i + 1, false);
+                return;
+            }
+            float y = data.getY(i);
+            if (y < data.getY(minIndex[level][position] - shift)) minIndex[level][position] = sequence;
+            if (y > data.getY(maxIndex[level][position] - shift)) maxIndex[level][position] = sequence;
+        }
+    }
+
+    /**
+     * Returns the level whose buckets cover the given range with at most the given amount of buckets.
+     *
+     * @param from       the first index of the range
+     * @param to         the last index (excluded) of the range
+     * @param maxBuckets the maximum amount of buckets
+     * @return the level or -1 if the range can be rendered with raw points
+     */
+
+    public int level(int from, int to, int maxBuckets) {
+        int length = to - from;
+        if (length <= 2 * maxBuckets) {
+            return -1;
+        }
+        for (int level = 0; level < levels; level++) {
+            if ((length >> (baseLevel + level)) <= maxBuckets) {
+                return level;
+            }
+        }
+        return levels - 1;
+    }
+
+    /**
+     * @param level the pyramid level
+     * @return the bucket size of the given level
+     */
+
+    public int bucketSize(int level) {
+        return 1 << (baseLevel + level);
+    }
+
+    /**
+     * @param level the pyramid level
+     * @param i     the index of a point
+     * @return the bucket of the given level that contains the specified point
+     */
+
+    public int bucketOf(int level, int i) {
+        return (shift + i) >> (baseLevel + level);
+    }
+
+    /**
+     * @param level  the pyramid level
+     * @param bucket the bucket
+     * @return the index of the first point of the specified bucket; it is negative if the point has been evicted
+     */
+
+    public int bucketStart(int level, int bucket) {
+        return (bucket << (baseLevel + level)) - shift;
+    }
+
+    /**
+     * @return the index of the minimum point of the specified bucket; it is negative if the point has been evicted
+     */
+
+    public int getMin(int level, int bucket) {
+        return minIndex[level][bucket - firstBucket[level]] - shift;
+    }
+
+    /**
+     * @return the index of the maximum point of the specified bucket; it is negative if the point has been evicted
+     */
+
+    public int getMax(int level, int bucket) {
+        return maxIndex[level][bucket - firstBucket[level]] - shift;
+    }
+
+    /**
+     * Returns the index of the minimum point on the y-axis in the given range.
+     * The pyramid must describe the given storage (see {@link #validate(PointStorage)}).
+     * <br>
+     * Time required: O(log(n))
+     *
+     * @param data the points described by this pyramid
+     * @param from the first index of the range
+     * @param to   the last index (excluded) of the range
+     * @return the index of the minimum point or -1 if the range is empty
+     */
+
+    public int rangeMin(PointStorage data, int from, int to) {
+        return rangeExtreme(data, from, to, true);
+    }
+
+    /**
+     * Returns the index of the maximum point on the y-axis in the given range.
+     * The pyramid must describe the given storage (see {@link #validate(PointStorage)}).
+     * <br>
+     * Time required: O(log(n))
+     *
+     * @param data the points described by this pyramid
+     * @param from the first index of the range
+     * @param to   the last index (excluded) of the range
+     * @return the index of the maximum point or -1 if the range is empty
+     */
+
+    public int rangeMax(PointStorage data, int from, int to) {
+        return rangeExtreme(data, from, to, false);
+    }
+
+    /**
+     * Helper function. Covers the range, from left to right, with the largest aligned buckets that fit in it.
+     * Points that don't fill a bucket of the first level are visited one by one.
+     */
+
+    private int rangeExtreme(PointStorage data, int from, int to, boolean minimum) {
+        int result = -1;
+        float best = 0f;
+        int i = shift + from;
+        int end = shift + to;
+        while (i < end) {
+            int level = -1;
+            while (level + 1 < levels) {
+                int bucketSize = bucketSize(level + 1);
+                if ((i & (bucketSize - 1)) != 0 || (long) i + bucketSize > end) break;
+                level++;
+            }
+
+            int candidate;
+            if (level == -1) {
+                candidate = i++ - shift;
+            } else {
+                int bucket = i >> (baseLevel + level);
+                candidate = minimum ? getMin(level, bucket) : getMax(level, bucket);
+                i += bucketSize(level);
+            }
+
+            float value = data.getY(candidate);
+            if (result == -1 || (minimum ? value < best : value > best)) {
+                result = candidate;
+                best = value;
+            }
+        }
+        return result;
+    }
+}
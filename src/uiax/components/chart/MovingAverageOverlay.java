@@ -0,0 +1,135 @@
+package uiax.components.chart;
+
+import java.util.Objects;
+
+/**
+ * MovingAverageOverlay draws the moving average of the points of a distribution on the y-axis,
+ * in the order the points have been added.
+ * <ul>
+ *     <li>SIMPLE: the mean of the last {@code period} points, starting from the {@code period}-th point;</li>
+ *     <li>EXPONENTIAL: the exponentially weighted mean, with smoothing factor {@code 2 / (period + 1)},
+ *     starting from the first point.</li>
+ * </ul>
+ * On a {@link RingStorage}, the averaged points are held by a ring of the same capacity, so the averages of the
+ * evicted points are discarded in O(1) and the averages at the start of the window keep including the points that
+ * preceded them.
+ * <br>
+ * Time required: O(1) for each appended or evicted point
+ * <br>
+ * Space required: O(period) besides the averaged points
+ */
+
+public final class MovingAverageOverlay extends Overlay {
+
+    /**
+     * Moving average type
+     */
+
+    public enum TYPE {SIMPLE, EXPONENTIAL}
+
+    private final TYPE type;
+    private final int period;
+
+    // simple moving average
+    private final float[] window;
+    private int next;
+    private int filled;
+    private double sum;
+
+    // exponential moving average
+    private final double alpha;
+    private double average;
+
+    /**
+     * Creates a new MovingAverageOverlay.
+     *
+     * @param type   a not null {@link TYPE}
+     * @param period the number of points the average spans
+     * @throws NullPointerException     if {@code type == null}
+     * @throws IllegalArgumentException if {@code period < 1}
+     */
+
+    public MovingAverageOverlay(TYPE type, int period) {
+        this.type = Objects.requireNonNull(type);
+        if (period < 1) {
+            throw new IllegalArgumentException("period can not be < 1");
+        }
+        this.period = period;
+        window = type == TYPE.SIMPLE ? new float[period] : null;
+        alpha = 2d / (period + 1);
+    }
+
+    @Override
+    PointStorage seriesStorage(PointStorage data) {
+        return data instanceof RingStorage ? new RingStorage(((RingStorage) data).capacity()) : new ColumnarStorage();
+    }
+
+    /**
+     * The average of each point depends only on the points that precede it, so the state is kept and only
+     * the averages of the evicted points are removed.
+     */
+
+    @Override
+    boolean evict(PointStorage data, int count, int remaining) {
+        if (!(series.getStorage() instanceof RingStorage)) {
+            return false;
+        }
+        // the averages belong to the most recent points: removing the oldest ones costs O(1) each
+        while (series.size() > remaining) {
+            series.remove(0);
+        }
+        return true;
+    }
+
+    @Override
+    void reset() {
+        next = 0;
+        filled = 0;
+        sum = 0d;
+    }
+
+    @Override
+    void append(float x, float y) {
+        if (type == TYPE.EXPONENTIAL) {
+            average = filled == 0 ? y : average + alpha * (y - average);
+            filled = 1;
+            series.add(x, (float) average);
+            return;
+        }
+
+        if (filled == period) {
+            sum -= window[next];
+        } else {
+            filled++;
+        }
+        window[next] = y;
+        sum += y;
+        next = next + 1 == period ? 0 : next + 1;
+        // sums the window again once per period, so that rounding errors don't accumulate
+        if (next == 0) {
+            sum = 0d;
+            for (int i = 0; i < filled; i++) {
+                sum += window[i];
+            }
+        }
+        if (filled == period) {
+            series.add(x, (float) (sum / period));
+        }
+    }
+
+    /**
+     * @return the moving average type
+     */
+
+    public TYPE getType() {
+        return type;
+    }
+
+    /**
+     * @return the number of points the average spans
+     */
+
+    public int getPeriod() {
+        return period;
+    }
+}
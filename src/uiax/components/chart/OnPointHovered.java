@@ -0,0 +1,12 @@
+package uiax.components.chart;
+
+import uia.core.basement.Callback;
+
+/**
+ * OnPointHovered is triggered when the mouse hovers over a point of a {@link XChart}.
+ * <br>
+ * It provides the hovered {@link ChartPoint}: its distribution, its index and its values.
+ */
+
+public interface OnPointHovered extends Callback<ChartPoint> {
+}
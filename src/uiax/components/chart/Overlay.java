@@ -0,0 +1,157 @@
+package uiax.components.chart;
+
+import uia.core.rendering.color.Color;
+import uia.core.rendering.color.ColorCollection;
+
+import java.util.Objects;
+
+/**
+ * Overlay is a series derived from the points of a {@link DrawableDistribution} (e.g. a trend line or a moving
+ * average) and drawn on top of them, with the same axis range (see {@link DrawableDistribution#addOverlay(Overlay)}).
+ * <br>
+ * The derived series is kept up to date on each draw: appended points are added to it in O(1) each and the
+ * evictions of a {@link RingStorage} are removed from it incrementally, while replacing or removing any other point
+ * rebuilds it in T(n).
+ * <br>
+ * The derived points are held by a line-only {@link DrawableDistribution}, so they are decimated and projected
+ * like any other distribution.
+ */
+
+public abstract class Overlay {
+    DrawableDistribution series;
+    private Color color = ColorCollection.BLUE;
+    private float lineWidth = 2f;
+
+    private PointStorage storage;
+    private long editVersion = -1;
+    private long evicted;
+    private int points;
+
+    Overlay() {
+        series = createSeries(new ColumnarStorage());
+    }
+
+    /**
+     * Helper function. Creates the line-only distribution that holds the derived points.
+     */
+
+    private DrawableDistribution createSeries(PointStorage seriesStorage) {
+        DrawableDistribution result = new DrawableDistribution(seriesStorage);
+        result.enablePoint(false);
+        result.setLineColor(color);
+        result.setLineWidth(lineWidth);
+        return result;
+    }
+
+    /**
+     * Sets the overlay color.
+     *
+     * @param color a not null {@link Color}
+     * @return this Overlay
+     * @throws NullPointerException if {@code color == null}
+     */
+
+    public Overlay setColor(Color color) {
+        series.setLineColor(Objects.requireNonNull(color));
+        this.color = color;
+        return this;
+    }
+
+    /**
+     * Sets the overlay line width.
+     *
+     * @param lineWidth the line width greater than or equal to zero
+     * @return this Overlay
+     */
+
+    public Overlay setLineWidth(float lineWidth) {
+        series.setLineWidth(lineWidth);
+        this.lineWidth = lineWidth;
+        return this;
+    }
+
+    /**
+     * Makes sure that the derived series describes the given points.
+     * Appended points are added to the series and evicted points are removed from it when the overlay supports it
+     * (see {@link #evict(PointStorage, int, int)}); any other change rebuilds it.
+     *
+     * @param data the points of the distribution the overlay is attached to
+     */
+
+    void validate(PointStorage data) {
+        boolean changed = false;
+        long evictedPoints = storage == data ? data.evictedSince(editVersion, evicted) : -1;
+        if (evictedPoints < 0 || evictedPoints > points
+                || (evictedPoints > 0 && !evict(data, (int) evictedPoints, points - (int) evictedPoints))) {
+            if (storage != data) {
+                series = createSeries(seriesStorage(data));
+            }
+            storage = data;
+            points = 0;
+            series.clear();
+            reset();
+            changed = true;
+        } else if (evictedPoints > 0) {
+            points -= (int) evictedPoints;
+            changed = true;
+        }
+        editVersion = data.editVersion;
+        evicted = data.evicted;
+
+        int size = data.size();
+        if (points < size) {
+            changed = true;
+        }
+        while (points < size) {
+            append(data.getX(points), data.getY(points));
+            points++;
+        }
+        if (changed) {
+            complete();
+        }
+    }
+
+    /**
+     * Helper function. Returns the storage of the derived points for the given distribution points.
+     * By default, the derived points are stored in primitive columns.
+     */
+
+    PointStorage seriesStorage(PointStorage data) {
+        return new ColumnarStorage();
+    }
+
+    /**
+     * Helper function. Removes the oldest points, already evicted from the distribution, from the overlay.
+     * By default, evictions aren't supported and the overlay is rebuilt.
+     *
+     * @param data      the points of the distribution, starting from the first point that hasn't been evicted
+     * @param count     the number of evicted points, previously added to the overlay
+     * @param remaining the number of points, previously added to the overlay, that haven't been evicted
+     * @return true if the evicted points have been removed, false if the overlay must be rebuilt
+     */
+
+    boolean evict(PointStorage data, int count, int remaining) {
+        return false;
+    }
+
+    /**
+     * Helper function. Clears the state of the overlay before the points are added again.
+     */
+
+    abstract void reset();
+
+    /**
+     * Helper function. Adds a point of the distribution to the overlay.
+     * <br>
+     * Time required: O(1)
+     */
+
+    abstract void append(float x, float y);
+
+    /**
+     * Helper function. Called once the new points have been added to the overlay.
+     */
+
+    void complete() {
+    }
+}
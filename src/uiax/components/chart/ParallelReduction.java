@@ -0,0 +1,219 @@
+package uiax.components.chart;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelReduction runs the chart full scans on the common fork/join pool.
+ * <br>
+ * A range of points is split in halves until it is smaller than {@link #THRESHOLD}; the halves are reduced
+ * in parallel and their results merged. Below the threshold, scans run serially on the calling thread, so small
+ * distributions don't pay the task overhead.
+ */
+
+final class ParallelReduction {
+    /**
+     * The minimum amount of points to run a scan in parallel.
+     */
+    static final int THRESHOLD = 1 << 16;
+
+    private ParallelReduction() {
+    }
+
+    /**
+     * An action applied to a range of indices.
+     */
+
+    interface RangeAction {
+
+        /**
+         * @param from the first index of the range
+         * @param to   the last index (excluded) of the range
+         */
+
+        void run(int from, int to);
+    }
+
+    /**
+     * Summarizes a sequence of points.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param x    the x-values
+     * @param y    the y-values
+     * @param from the first index of the sequence
+     * @param to   the last index (excluded) of the sequence
+     * @return the {@link RunningStatistics} of the sequence
+     */
+
+    static RunningStatistics summarize(float[] x, float[] y, int from, int to) {
+        if (to - from < THRESHOLD) {
+            RunningStatistics result = new RunningStatistics();
+            for (int i = from; i < to; i++) {
+                result.add(x[i], y[i]);
+            }
+            return result;
+        }
+        return ForkJoinPool.commonPool().invoke(new StatisticsTask(x, y, from, to));
+    }
+
+    /**
+     * Finds the extremes of a range of points. Storages that don't allow concurrent reads are scanned serially.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param data   the points to scan
+     * @param from   the first index of the range
+     * @param to     the last index (excluded) of the range
+     * @param target an array of four elements where minimum x, minimum y, maximum x and maximum y are stored;
+     *               no other array is allocated
+     * @return the given target
+     */
+
+    static float[] extremes(PointStorage data, int from, int to, float[] target) {
+        if (to - from < THRESHOLD || !data.allowsConcurrentReads()) {
+            return scanExtremes(data, from, to, target);
+        }
+        ExtremesTask task = new ExtremesTask(data, from, to);
+        ForkJoinPool.commonPool().invoke(task);
+        target[0] = task.minX;
+        target[1] = task.minY;
+        target[2] = task.maxX;
+        target[3] = task.maxY;
+        return target;
+    }
+
+    /**
+     * Applies an action to a range of indices, split among the fork/join workers when it is
+     * larger than {@link #THRESHOLD}. The action must be safe to run concurrently on disjoint ranges.
+     *
+     * @param from   the first index of the range
+     * @param to     the last index (excluded) of the range
+     * @param action a not null {@link RangeAction}
+     */
+
+    static void forEach(int from, int to, RangeAction action) {
+        if (to - from < THRESHOLD) {
+            action.run(from, to);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(from, to, action));
+        }
+    }
+
+    /**
+     * Helper function. Serial scan for the extremes.
+     */
+
+    private static float[] scanExtremes(PointStorage data, int from, int to, float[] result) {
+        result[0] = result[1] = Float.POSITIVE_INFINITY;
+        result[2] = result[3] = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            float x = data.getX(i);
+            float y = data.getY(i);
+            if (x < result[0]) result[0] = x;
+            if (y < result[1]) result[1] = y;
+            if (x > result[2]) result[2] = x;
+            if (y > result[3]) result[3] = y;
+        }
+        return result;
+    }
+
+    private static final class StatisticsTask extends RecursiveTask<RunningStatistics> {
+        private static final long serialVersionUID = 1L;
+        private final float[] x;
+        private final float[] y;
+        private final int from;
+        private final int to;
+
+        StatisticsTask(float[] x, float[] y, int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RunningStatistics compute() {
+            if (to - from < THRESHOLD) {
+                return summarize(x, y, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(x, y, from, middle);
+            left.fork();
+            RunningStatistics result = new StatisticsTask(x, y, middle, to).compute();
+            RunningStatistics leftResult = left.join();
+            leftResult.merge(result);
+            return leftResult;
+        }
+    }
+
+    /**
+     * ExtremesTask returns its extremes through fields, so leaves don't allocate any array.
+     */
+
+    private static final class ExtremesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final PointStorage data;
+        private final int from;
+        private final int to;
+        private float minX;
+        private float minY;
+        private float maxX;
+        private float maxY;
+
+        ExtremesTask(PointStorage data, int from, int to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < THRESHOLD) {
+                minX = minY = Float.POSITIVE_INFINITY;
+                maxX = maxY = Float.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    float x = data.getX(i);
+                    float y = data.getY(i);
+                    if (x < minX) minX = x;
+                    if (y < minY) minY = y;
+                    if (x > maxX) maxX = x;
+                    if (y > maxY) maxY = y;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ExtremesTask left = new ExtremesTask(data, from, middle);
+            ExtremesTask right = new ExtremesTask(data, middle, to);
+            invokeAll(left, right);
+            minX = Math.min(left.minX, right.minX);
+            minY = Math.min(left.minY, right.minY);
+            maxX = Math.max(left.maxX, right.maxX);
+            maxY = Math.max(left.maxY, right.maxY);
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final RangeAction action;
+
+        RangeTask(int from, int to, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < THRESHOLD) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+        }
+    }
+}
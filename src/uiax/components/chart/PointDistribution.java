@@ -1,16 +1,27 @@
 package uiax.components.chart;
 
-import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * Distribution of bi-dimensional points.
  * <br>
  * Distribution is responsible to handle a distribution of 2D points.
+ * Points are held by a {@link PointStorage}. By default, they are stored in primitive columns
+ * (see {@link ColumnarStorage}), so no object is allocated for each point; a {@link RingStorage} retains
+ * only the most recent points, a {@link ReservoirStorage} retains a uniform sample of an unbounded stream,
+ * a {@link CompressedStorage} encodes time series in compressed blocks and a {@link MappedStorage} keeps
+ * the points in a memory-mapped file. Series that share the same x-values can be stored once
+ * in a {@link SeriesFrame} and plotted through its read-only views.
  * <br>
- * At the moment, only mean and standard deviation have been implemented.
+ * Statistics are streamed (see {@link RunningStatistics}): mean and standard deviation are updated in O(1)
+ * for each added or removed point, while minimum and maximum are recalculated only when an extreme point
+ * is removed or replaced.
+ * <br>
+ * Besides mean and standard deviation, quantiles are estimated in bounded memory
+ * (see {@link #getQuantile(AXIS, double)}).
+ * <br>
+ * Point lookups ({@link #indexOf(float, float)}) scan the points unless a hash index is enabled
+ * (see {@link #enableHashIndex(boolean)}).
  */
 
 public class PointDistribution {
@@ -21,21 +32,31 @@ public class PointDistribution {
 
     public enum AXIS {X, Y}
 
-    private final List<float[]> data;
+    private final PointStorage data;
+    private final RunningStatistics statistics;
+    private PointHashIndex hashIndex;
 
-    private final FloatArray minPoint;
-    private final FloatArray maxPoint;
-
-    private final FloatArray mean;
-    private final FloatArray standardDeviation;
+    private QuantileSketch[] sketches;
+    private long sketchEditVersion;
+    private long sketchEvicted;
+    private int sketchedPoints;
+    private int staleSketchPoints;
 
     public PointDistribution() {
-        minPoint = new FloatArray();
-        maxPoint = new FloatArray();
-        mean = new FloatArray();
-        standardDeviation = new FloatArray();
+        this(new ColumnarStorage());
+    }
+
+    /**
+     * Creates a new PointDistribution on top of the given storage.
+     *
+     * @param storage a not null {@link PointStorage} not used by other distributions, unless it is read-only
+     *                (see {@link SeriesFrame#view(int)})
+     * @throws NullPointerException if {@code storage == null}
+     */
 
-        data = new ArrayList<>();
+    public PointDistribution(PointStorage storage) {
+        data = Objects.requireNonNull(storage);
+        statistics = storage.statistics;
     }
 
     /**
@@ -51,139 +72,151 @@ public class PointDistribution {
     }
 
     /**
-     * Extract the minimum point from this distribution.
-     * <br>
-     * Time required: T(n)
-     * <br>
-     * Space required: O(1)
-     */
-
-    private void extractMinimumPoint() {
-        Arrays.fill(minPoint.data, Integer.MAX_VALUE);
-
-        data.forEach(point -> {
-            float x = point[0];
-            float y = point[1];
-            float[] data = minPoint.data;
-            if (x < data[0]) data[0] = x;
-            if (y < data[1]) data[1] = y;
-        });
-    }
-
-    /**
-     * Extract the maximum point from this distribution.
-     * <br>
-     * Time required: T(n)
-     * <br>
-     * Space required: O(1)
+     * Helper function. Makes sure that minimum and maximum are up to date.
      */
 
-    private void extractMaximumPoint() {
-        Arrays.fill(maxPoint.data, Integer.MIN_VALUE);
-
-        data.forEach(point -> {
-            float x = point[0];
-            float y = point[1];
-            float[] data = maxPoint.data;
-            if (x > data[0]) data[0] = x;
-            if (y > data[1]) data[1] = y;
-        });
+    private void validateExtremes() {
+        if (statistics.isExtremesCorrupted()) {
+            data.extractExtremes();
+        }
     }
 
     /**
-     * Calculate the distribution mean value
+     * @return the {@link PointStorage} that holds the points of this distribution
      */
 
-    private void calculateMean() {
-        float[] meanData = mean.data;
-
-        Arrays.fill(meanData, 0f);
-
-        data.forEach(point -> {
-            meanData[0] += point[0];
-            meanData[1] += point[1];
-        });
-
-        int size = data.size();
-        meanData[0] /= size;
-        meanData[1] /= size;
-    }
-
-    /**
-     * @param correctVariance true to calculate variance as sum( (xi - ux)^2 ) / (n+1)
-     */
-
-    private void calculateStandardDeviation(boolean correctVariance) {
-        calculateMean();
-
-        float[] sdData = standardDeviation.data;
-        float[] meanData = mean.data;
-
-        Arrays.fill(sdData, 0);
-
-        // sum( (xi - ux)^2 ) / n
-
-        data.forEach(point -> {
-            for (int i = 0; i < 2; i++) {
-                float arg = point[i] - meanData[i];
-                sdData[i] += arg * arg;
-            }
-        });
-
-        int size = data.size() + (correctVariance ? 1 : 0);
-        for (int i = 0; i < 2; i++) {
-            sdData[i] = (float) Math.sqrt(sdData[i] / size);
-        }
+    public PointStorage getStorage() {
+        return data;
     }
 
     /**
+     * Returns the data version of this distribution. The version changes every time a point is added,
+     * replaced or removed, so it can be used to detect changes without comparing points.
      *
+     * @return the data version
      */
 
-    private void invalidateState() {
-        minPoint.invalidateState();
-        maxPoint.invalidateState();
-        mean.invalidateState();
-        standardDeviation.invalidateState();
+    public long version() {
+        return data.version;
     }
 
     /**
      * Remove all vectors in this distribution
+     *
+     * @throws UnsupportedOperationException if the storage is read-only (e.g. a read-only {@link MappedStorage})
      */
 
     public PointDistribution clear() {
         data.clear();
-        invalidateState();
+        data.version++;
+        data.editVersion++;
+        if (hashIndex != null) {
+            hashIndex.clear();
+            hashIndex.sync(data);
+        }
         return this;
     }
 
     /**
      * Add a new vector to this distribution
+     * <br>
+     * Time required: amortized O(1)
      *
      * @param x the vector's value on x-axis
      * @param y the vector's value on y-axis
      * @return this distribution
+     * @throws UnsupportedOperationException if the storage is read-only (e.g. a read-only {@link MappedStorage})
      */
 
     public PointDistribution add(float x, float y) {
-        data.add(new float[]{x, y});
-        invalidateState();
+        if (hashIndex != null && hashIndex.isValid(data)) {
+            int size = data.size();
+            long editVersion = data.editVersion;
+            boolean mayEvict = size > 0 && data.evictsOldest();
+            float firstX = mayEvict ? data.getX(0) : 0f;
+            float firstY = mayEvict ? data.getY(0) : 0f;
+
+            data.add(x, y);
+            data.version++;
+
+            if (data.editVersion == editVersion && data.size() == size + 1) {
+                hashIndex.put(x, y, size);
+                hashIndex.sync(data);
+            } else if (mayEvict && data.editVersion == editVersion + 1 && data.size() == size) {
+                hashIndex.removeFirst(firstX, firstY);
+                hashIndex.put(x, y, size - 1);
+                hashIndex.sync(data);
+            }
+        } else {
+            data.add(x, y);
+            data.version++;
+        }
+        if (sketches != null) {
+            validateSketches(false);
+        }
+        return this;
+    }
+
+    /**
+     * Add a sequence of vectors to this distribution.
+     * <br>
+     * Time required: T(length)
+     *
+     * @param x      the vectors' values on x-axis
+     * @param y      the vectors' values on y-axis
+     * @param offset the index of the first vector to add
+     * @param length the number of vectors to add
+     * @return this distribution
+     * @throws NullPointerException          if {@code x == null || y == null}
+     * @throws IndexOutOfBoundsException     if the specified range exceeds one of the given arrays
+     * @throws UnsupportedOperationException if the storage is read-only (e.g. a read-only {@link MappedStorage})
+     */
+
+    public PointDistribution addAll(float[] x, float[] y, int offset, int length) {
+        Objects.requireNonNull(x);
+        Objects.requireNonNull(y);
+        int size = data.size();
+        long editVersion = data.editVersion;
+        boolean validIndex = hashIndex != null && hashIndex.isValid(data);
+        data.addAll(x, y, offset, length);
+        data.version++;
+        if (validIndex && data.editVersion == editVersion && data.size() == size + length) {
+            for (int i = 0; i < length; i++) {
+                hashIndex.put(x[offset + i], y[offset + i], size + i);
+            }
+            hashIndex.sync(data);
+        }
+        if (sketches != null) {
+            validateSketches(false);
+        }
         return this;
     }
 
     /**
      * Replace a vector with a new one
+     * <br>
+     * Time required: O(1) unless the replaced vector is an extreme
      *
      * @param i the index of the vector to replace
      * @param x the vector's value on x-axis
      * @param y the vector's value on y-axis
      * @return this distribution
-     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     * @throws IndexOutOfBoundsException     if {@code i < 0 || i >= size()}
+     * @throws UnsupportedOperationException if the storage is read-only (e.g. a read-only {@link MappedStorage})
      */
 
     public PointDistribution set(int i, float x, float y) {
-        data.set(i, new float[]{x, y});
-        invalidateState();
+        boolean validIndex = hashIndex != null && hashIndex.isValid(data);
+        float oldX = validIndex ? data.getX(i) : 0f;
+        float oldY = validIndex ? data.getY(i) : 0f;
+        data.set(i, x, y);
+        data.version++;
+        data.editVersion++;
+        if (validIndex) {
+            hashIndex.remove(oldX, oldY, i);
+            hashIndex.put(x, y, i);
+            hashIndex.sync(data);
+        }
         return this;
     }
 
@@ -192,12 +225,21 @@ public class PointDistribution {
      *
      * @param i the index of the vector to remove
      * @return this distribution
-     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     * @throws IndexOutOfBoundsException     if {@code i < 0 || i >= size()}
+     * @throws UnsupportedOperationException if the storage is read-only (e.g. a read-only {@link MappedStorage})
      */
 
     public PointDistribution remove(int i) {
+        boolean validIndex = hashIndex != null && hashIndex.isValid(data);
+        float oldX = validIndex ? data.getX(i) : 0f;
+        float oldY = validIndex ? data.getY(i) : 0f;
         data.remove(i);
-        invalidateState();
+        data.version++;
+        data.editVersion++;
+        if (validIndex) {
+            hashIndex.removeAndShift(oldX, oldY, i);
+            hashIndex.sync(data);
+        }
         return this;
     }
 
@@ -212,7 +254,33 @@ public class PointDistribution {
      */
 
     public float get(int i, AXIS component) {
-        return data.get(i)[mapCartesianComponentToIndex(component)];
+        return mapCartesianComponentToIndex(component) == 0 ? data.getX(i) : data.getY(i);
+    }
+
+    /**
+     * Returns the point's value on the x-axis. Unlike {@link #get(int, AXIS)}, it doesn't map an axis,
+     * so it's the cheapest accessor for loops over the points.
+     *
+     * @param i the index of the point in this distribution
+     * @return the point's value on the x-axis
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public float getX(int i) {
+        return data.getX(i);
+    }
+
+    /**
+     * Returns the point's value on the y-axis. Unlike {@link #get(int, AXIS)}, it doesn't map an axis,
+     * so it's the cheapest accessor for loops over the points.
+     *
+     * @param i the index of the point in this distribution
+     * @return the point's value on the y-axis
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public float getY(int i) {
+        return data.getY(i);
     }
 
     /**
@@ -224,11 +292,9 @@ public class PointDistribution {
      */
 
     public float getMin(AXIS component) {
-        if (minPoint.isCorrupted()) {
-            minPoint.validateState();
-            extractMinimumPoint();
-        }
-        return minPoint.data[mapCartesianComponentToIndex(component)];
+        int index = mapCartesianComponentToIndex(component);
+        validateExtremes();
+        return statistics.getMin(index);
     }
 
     /**
@@ -240,15 +306,15 @@ public class PointDistribution {
      */
 
     public float getMax(AXIS component) {
-        if (maxPoint.isCorrupted()) {
-            maxPoint.validateState();
-            extractMaximumPoint();
-        }
-        return maxPoint.data[mapCartesianComponentToIndex(component)];
+        int index = mapCartesianComponentToIndex(component);
+        validateExtremes();
+        return statistics.getMax(index);
     }
 
     /**
      * Returns the distribution's mean
+     * <br>
+     * Time required: O(1)
      *
      * @param component the not null {@link AXIS}
      * @return the mean's value on the specified axis
@@ -256,15 +322,13 @@ public class PointDistribution {
      */
 
     public float getMean(AXIS component) {
-        if (mean.isCorrupted()) {
-            mean.validateState();
-            calculateMean();
-        }
-        return mean.data[mapCartesianComponentToIndex(component)];
+        return statistics.getMean(mapCartesianComponentToIndex(component));
     }
 
     /**
      * Returns the correct standard deviation of this distribution
+     * <br>
+     * Time required: O(1)
      *
      * @param component the not null {@link AXIS}
      * @return the standard deviation value on the specified axis
@@ -272,55 +336,132 @@ public class PointDistribution {
      */
 
     public float getStandardDeviation(AXIS component) {
-        if (standardDeviation.isCorrupted()) {
-            standardDeviation.validateState();
-            calculateStandardDeviation(true);
-        }
-        return standardDeviation.data[mapCartesianComponentToIndex(component)];
+        return statistics.getStandardDeviation(mapCartesianComponentToIndex(component), true);
     }
 
     /**
-     * @return the amount of points
+     * Helper function. Makes sure that the quantile sketches describe the points of this distribution.
+     * Appended points are added to the sketches. Evicted points stay in the sketches until they exceed 1% of the
+     * points, about the rank error of the sketches, then the sketches are rebuilt from the current points
+     * (amortized O(1) for each evicted point, about 100 additions to the sketches). Any other change rebuilds them.
+     *
+     * @param rebuild true to rebuild the sketches when needed; otherwise, they are updated only with the appended
+     *                points and rebuilt on the next query
      */
 
-    public int size() {
-        return data.size();
+    private void validateSketches(boolean rebuild) {
+        int size = data.size();
+        long evictedPoints = data.evictedSince(sketchEditVersion, sketchEvicted);
+        if (evictedPoints < 0 || evictedPoints > sketchedPoints
+                || staleSketchPoints + evictedPoints > size / 100) {
+            if (!rebuild) {
+                return;
+            }
+            sketches[0].clear();
+            sketches[1].clear();
+            sketchedPoints = 0;
+            staleSketchPoints = 0;
+        } else {
+            sketchedPoints -= (int) evictedPoints;
+            staleSketchPoints += (int) evictedPoints;
+        }
+        sketchEditVersion = data.editVersion;
+        sketchEvicted = data.evicted;
+        for (int i = sketchedPoints; i < size; i++) {
+            sketches[0].add(data.getX(i));
+            sketches[1].add(data.getY(i));
+        }
+        sketchedPoints = size;
     }
 
     /**
-     * @return the point's index in this distribution or -1 if it isn't
+     * Estimates the value below which the given fraction of the points falls, e.g. {@code q = 0.99} for the
+     * 99th percentile.
+     * <br>
+     * Quantiles are estimated by a bounded-memory sketch (see {@link QuantileSketch}) of a few kilobytes for each
+     * axis, created on the first call. From then on, the sketch is updated on each append. For a sliding window
+     * (e.g. {@link RingStorage}), the evicted points are discarded by rebuilding the sketch from the window once
+     * they exceed 1% of it. Until then, they shift the rank of the estimate by at most 1%, on top of the
+     * sketch's own rank error of about 0.85%. Replacing or removing points rebuilds the sketch on the next call.
+     * <br>
+     * Time required: O(1), amortized O(1) for each appended or evicted point; T(n) after a replacement or removal
+     *
+     * @param component the not null {@link AXIS}
+     * @param q         the quantile between [0, 1]
+     * @return the estimated quantile on the specified axis or NaN if there are no points
+     * @throws NullPointerException     if {@code component == null}
+     * @throws IllegalArgumentException if {@code q < 0 || q > 1}
      */
 
-    public int indexOf(float x, float y) {
-        return data.indexOf(new float[]{x, y});
+    public float getQuantile(AXIS component, double q) {
+        int index = mapCartesianComponentToIndex(component);
+        if (!(q >= 0d && q <= 1d)) {
+            throw new IllegalArgumentException("q must be between [0, 1]");
+        }
+        if (sketches == null) {
+            sketches = new QuantileSketch[]{new QuantileSketch(), new QuantileSketch()};
+            sketchEditVersion = data.editVersion - 1;
+        }
+        validateSketches(true);
+        return sketches[index].getQuantile(q);
     }
 
     /**
-     * @return true if the given point is in this distribution
+     * @return the amount of points
      */
 
-    public boolean contains(float x, float y) {
-        return indexOf(x, y) != -1;
+    public int size() {
+        return data.size();
     }
 
     /**
-     * FloatArray is a wrapper for an array of float. It allows to track array's state.
+     * Enables or disables the hash index used by {@link #indexOf(float, float)} and {@link #contains(float, float)}.
+     * <br>
+     * The index is an open-addressing table from (x, y) to the point index, kept up to date through
+     * add, set and remove. Changes it can't follow (e.g. a bulk insertion that evicts points) make it rebuild
+     * on the next lookup.
+     * <br>
+     * Space required: 26 to 52 bytes for each point. Each slot takes 13 bytes and the table keeps at least two
+     * slots for each point, up to four right after it doubles.
+     *
+     * @param enableHashIndex true to enable the hash index
+     * @return this distribution
      */
 
-    private static class FloatArray {
-        private boolean corruptedState;
-        private final float[] data = new float[2];
-
-        public void validateState() {
-            corruptedState = false;
+    public PointDistribution enableHashIndex(boolean enableHashIndex) {
+        if (!enableHashIndex) {
+            hashIndex = null;
+        } else if (hashIndex == null) {
+            hashIndex = new PointHashIndex();
+            hashIndex.validate(data);
         }
+        return this;
+    }
 
-        public void invalidateState() {
-            corruptedState = true;
-        }
+    /**
+     * Time required: O(1) on average with the hash index (see {@link #enableHashIndex(boolean)}), T(n) otherwise
+     *
+     * @return the point's index in this distribution or -1 if it isn't
+     */
 
-        private boolean isCorrupted() {
-            return corruptedState;
+    public int indexOf(float x, float y) {
+        if (hashIndex != null) {
+            hashIndex.validate(data);
+            return hashIndex.indexOf(x, y);
+        }
+        for (int i = 0; i < data.size(); i++) {
+            if (Float.compare(data.getX(i), x) == 0 && Float.compare(data.getY(i), y) == 0) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    /**
+     * @return true if the given point is in this distribution
+     */
+
+    public boolean contains(float x, float y) {
+        return indexOf(x, y) != -1;
     }
 }
@@ -0,0 +1,258 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * PointHashIndex maps a point (x, y) to its index in a {@link PointStorage}.
+ * <br>
+ * Points are kept in an open-addressing table with linear probing, made of primitive arrays: the key is the
+ * bit pattern of both coordinates (so {@link Float#compare(float, float)} semantics apply), the value is the
+ * point index. Duplicated points have one entry each and lookups return the smallest index.
+ * Removed entries are deleted with a backward shift, so the table never holds tombstones.
+ * <br>
+ * Indices are stored relatively to a base that is incremented when the first point is removed, so that a sliding
+ * window doesn't need to renumber its points.
+ * <br>
+ * Time required: O(1) on average to insert, remove or find a point. Removing a point that isn't the first one
+ * costs T(n), like the shift it mirrors.
+ */
+
+final class PointHashIndex {
+    private static final int INIT_CAPACITY = 16;
+
+    private long[] keys = new long[INIT_CAPACITY];
+    private int[] values = new int[INIT_CAPACITY];
+    private boolean[] used = new boolean[INIT_CAPACITY];
+    private int mask = INIT_CAPACITY - 1;
+    private int entries;
+    private int base;
+
+    private long version = -1;
+
+    /**
+     * Helper function. Packs a point into a key.
+     */
+
+    private static long keyOf(float x, float y) {
+        return ((long) Float.floatToIntBits(x) << 32) | (Float.floatToIntBits(y) & 0xffffffffL);
+    }
+
+    /**
+     * Helper function. Returns the home slot of the given key.
+     */
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @return true if this index describes the current version of the given storage
+     */
+
+    public boolean isValid(PointStorage data) {
+        return version == data.version;
+    }
+
+    /**
+     * Marks this index as the description of the current version of the given storage.
+     * It must be called after every incremental update.
+     */
+
+    public void sync(PointStorage data) {
+        version = data.version;
+    }
+
+    /**
+     * Forces this index to be rebuilt on the next validation.
+     */
+
+    public void invalidate() {
+        version = -1;
+    }
+
+    /**
+     * Makes sure that this index describes the given storage, rebuilding it if necessary.
+     * <br>
+     * Time required: O(1), T(n) on rebuild
+     */
+
+    public void validate(PointStorage data) {
+        if (!isValid(data)) {
+            clear();
+            int size = data.size();
+            for (int i = 0; i < size; i++) {
+                put(data.getX(i), data.getY(i), i);
+            }
+            sync(data);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+
+    public void clear() {
+        Arrays.fill(used, false);
+        entries = 0;
+        base = 0;
+    }
+
+    /**
+     * Helper function. Doubles the table capacity.
+     */
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        int capacity = 2 * oldKeys.length;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldUsed[s]) {
+                insert(oldKeys[s], oldValues[s]);
+            }
+        }
+    }
+
+    /**
+     * Helper function. Inserts an entry in the first free slot of its probe sequence.
+     */
+
+    private void insert(long key, int value) {
+        int slot = slotOf(key);
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @param x     the point value on the x-axis
+     * @param y     the point value on the y-axis
+     * @param index the point index
+     */
+
+    public void put(float x, float y, int index) {
+        if (2 * (entries + 1) > keys.length) {
+            grow();
+        }
+        insert(keyOf(x, y), index + base);
+        entries++;
+    }
+
+    /**
+     * Removes the entry of the specified point. The other indices don't change.
+     *
+     * @param x     the point value on the x-axis
+     * @param y     the point value on the y-axis
+     * @param index the point index
+     */
+
+    public void remove(float x, float y, int index) {
+        long key = keyOf(x, y);
+        int value = index + base;
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key && values[slot] == value) {
+                deleteSlot(slot);
+                entries--;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Helper function. Empties a slot and moves back the following entries of the cluster
+     * that would become unreachable.
+     */
+
+    private void deleteSlot(int hole) {
+        int slot = (hole + 1) & mask;
+        while (used[slot]) {
+            int home = slotOf(keys[slot]);
+            // the entry can fill the hole if its home isn't cyclically in (hole, slot]
+            boolean movable = hole <= slot
+                    ? home <= hole || home > slot
+                    : home <= hole && home > slot;
+            if (movable) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[hole] = false;
+    }
+
+    /**
+     * Removes the first point and shifts the indices of the others to the left.
+     * <br>
+     * Time required: O(1) on average
+     *
+     * @param x the value on the x-axis of the first point
+     * @param y the value on the y-axis of the first point
+     */
+
+    public void removeFirst(float x, float y) {
+        remove(x, y, 0);
+        base++;
+    }
+
+    /**
+     * Removes the specified point and shifts the indices of the following points to the left.
+     * <br>
+     * Time required: T(n)
+     *
+     * @param x     the point value on the x-axis
+     * @param y     the point value on the y-axis
+     * @param index the point index
+     */
+
+    public void removeAndShift(float x, float y, int index) {
+        if (index == 0) {
+            removeFirst(x, y);
+            return;
+        }
+        remove(x, y, index);
+        for (int s = 0; s < keys.length; s++) {
+            if (used[s] && values[s] - base > index) {
+                values[s]--;
+            }
+        }
+    }
+
+    /**
+     * Finds the smallest index of the given point.
+     * <br>
+     * Time required: O(1) on average
+     *
+     * @param x the point value on the x-axis
+     * @param y the point value on the y-axis
+     * @return the index of the point or -1 if there is no such point
+     */
+
+    public int indexOf(float x, float y) {
+        long key = keyOf(x, y);
+        int result = -1;
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                int index = values[slot] - base;
+                if (result == -1 || index < result) {
+                    result = index;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return result;
+    }
+}
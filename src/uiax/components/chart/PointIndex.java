@@ -0,0 +1,273 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * PointIndex answers nearest-point queries on a {@link PointStorage} without scanning all points.
+ * <br>
+ * Distances are measured in the viewport space: the caller provides the scale factors that map a data unit
+ * to a pixel on each axis. Depending on the data, one of two strategies is used:
+ * <ul>
+ *     <li>when the points are sorted on the x-axis, a binary search locates the query and the neighbours are
+ *     visited outwards until they are farther than the best candidate;</li>
+ *     <li>otherwise, points are bucketed into a uniform grid and the cells are visited in rings around the
+ *     query until they are farther than the best candidate.</li>
+ * </ul>
+ * The index is rebuilt lazily, on the first query after the data has changed. When points are only appended
+ * or the oldest ones evicted, the sortedness check is extended to the new points.
+ */
+
+final class PointIndex {
+    private static final int MAX_GRID_SIZE = 1024;
+    private static final int POINTS_PER_CELL = 4;
+
+    private PointStorage storage;
+    private long version = -1;
+    private long editVersion = -1;
+    private long evicted;
+
+    // sorted points
+    private boolean sorted;
+    private int checkedPoints;
+    private int lastInversion;
+
+    // uniform grid
+    private boolean gridValid;
+    private int gridSize;
+    private float gridMinX;
+    private float gridMinY;
+    private float cellWidth;
+    private float cellHeight;
+    private int[] cellStart = new int[0];
+    private int[] cellPoints = new int[0];
+
+    /**
+     * Helper function. Makes sure that the index describes the given storage.
+     */
+
+    private void validate(PointStorage data) {
+        if (storage == data && version == data.version) {
+            return;
+        }
+        int size = data.size();
+        long evictedPoints = storage == data ? data.evictedSince(editVersion, evicted) : -1;
+        if (evictedPoints < 0 || evictedPoints > checkedPoints || checkedPoints - evictedPoints > size) {
+            checkedPoints = 0;
+            lastInversion = 0;
+        } else {
+            checkedPoints -= (int) evictedPoints;
+            lastInversion -= (int) evictedPoints;
+        }
+        storage = data;
+        version = data.version;
+        editVersion = data.editVersion;
+        evicted = data.evicted;
+        gridValid = false;
+
+        // extends the sortedness check to the new points
+        if (data.isSortedOnX()) {
+            checkedPoints = size;
+            lastInversion = 0;
+        }
+        for (int i = Math.max(1, checkedPoints); i < size; i++) {
+            if (data.getX(i) < data.getX(i - 1)) {
+                lastInversion = i;
+            }
+        }
+        // the points are sorted once the last inversion has been evicted
+        sorted = lastInversion <= 0;
+        checkedPoints = size;
+    }
+
+    /**
+     * Helper function. Returns the grid cell of the given value.
+     */
+
+    private int cellOf(float value, float min, float cellDimension) {
+        int cell = cellDimension > 0 ? (int) ((value - min) / cellDimension) : 0;
+        return Math.max(0, Math.min(gridSize - 1, cell));
+    }
+
+    /**
+     * Helper function. Buckets the points into a uniform grid (counting sort).
+     * <br>
+     * Time required: T(n)
+     * <br>
+     * Space required: O(n)
+     */
+
+    private void buildGrid(PointStorage data) {
+        int size = data.size();
+        data.extractExtremes();
+        RunningStatistics statistics = data.statistics;
+        gridMinX = statistics.getMin(0);
+        gridMinY = statistics.getMin(1);
+        gridSize = Math.max(1, Math.min(MAX_GRID_SIZE, (int) Math.sqrt((double) size / POINTS_PER_CELL)));
+        cellWidth = (statistics.getMax(0) - gridMinX) / gridSize;
+        cellHeight = (statistics.getMax(1) - gridMinY) / gridSize;
+
+        int cells = gridSize * gridSize;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        if (cellPoints.length < size) {
+            cellPoints = new int[size];
+        }
+
+        for (int i = 0; i < size; i++) {
+            int cell = cellOf(data.getY(i), gridMinY, cellHeight) * gridSize + cellOf(data.getX(i), gridMinX, cellWidth);
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < size; i++) {
+            int cell = cellOf(data.getY(i), gridMinY, cellHeight) * gridSize + cellOf(data.getX(i), gridMinX, cellWidth);
+            cellPoints[next[cell]++] = i;
+        }
+        gridValid = true;
+    }
+
+    /**
+     * @param data the points to check
+     * @return true if the given points are sorted on the x-axis
+     */
+
+    public boolean isSorted(PointStorage data) {
+        validate(data);
+        return sorted;
+    }
+
+    /**
+     * Returns the first index whose value on the x-axis is not less than the given one.
+     * The points must be sorted on the x-axis.
+     * <br>
+     * Time required: O(log(n))
+     *
+     * @param data the sorted points
+     * @param x    the value on the x-axis
+     * @return an index between [0, size]
+     */
+
+    static int lowerBound(PointStorage data, float x) {
+        int low = 0;
+        int high = data.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (data.getX(middle) < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the nearest point to the given position.
+     *
+     * @param data        the points to search
+     * @param x           the position on the x-axis, in data units
+     * @param y           the position on the y-axis, in data units
+     * @param scaleX      the pixels per data unit on the x-axis
+     * @param scaleY      the pixels per data unit on the y-axis
+     * @param maxDistance the maximum distance, in pixels, of the nearest point
+     * @return the index of the nearest point or -1 if there is no point within the maximum distance
+     */
+
+    public int nearest(PointStorage data, float x, float y, float scaleX, float scaleY, float maxDistance) {
+        validate(data);
+        if (data.size() == 0) {
+            return -1;
+        }
+        if (sorted) {
+            return nearestSorted(data, x, y, scaleX, scaleY, maxDistance);
+        }
+        if (!gridValid) {
+            buildGrid(data);
+        }
+        return nearestInGrid(data, x, y, scaleX, scaleY, maxDistance);
+    }
+
+    /**
+     * Helper function. Binary search on the x-axis followed by an outward visit.
+     * <br>
+     * Time required: O(log(n) + k), where k is the number of points closer than the result on the x-axis
+     */
+
+    private int nearestSorted(PointStorage data, float x, float y, float scaleX, float scaleY, float maxDistance) {
+        int size = data.size();
+        int low = lowerBound(data, x);
+
+        int result = -1;
+        float best = maxDistance * maxDistance;
+        for (int i = low; i < size; i++) {
+            float dx = (data.getX(i) - x) * scaleX;
+            if (dx * dx > best) break;
+            float dy = (data.getY(i) - y) * scaleY;
+            float distance = dx * dx + dy * dy;
+            if (distance <= best) {
+                best = distance;
+                result = i;
+            }
+        }
+        for (int i = low - 1; i >= 0; i--) {
+            float dx = (data.getX(i) - x) * scaleX;
+            if (dx * dx > best) break;
+            float dy = (data.getY(i) - y) * scaleY;
+            float distance = dx * dx + dy * dy;
+            if (distance <= best) {
+                best = distance;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper function. Visits the grid cells in rings around the query.
+     * <br>
+     * Time required: proportional to the number of points in the visited cells
+     */
+
+    private int nearestInGrid(PointStorage data, float x, float y, float scaleX, float scaleY, float maxDistance) {
+        int cellX = cellOf(x, gridMinX, cellWidth);
+        int cellY = cellOf(y, gridMinY, cellHeight);
+        float ringWidth = Math.min(
+                cellWidth > 0 ? cellWidth * Math.abs(scaleX) : Float.POSITIVE_INFINITY,
+                cellHeight > 0 ? cellHeight * Math.abs(scaleY) : Float.POSITIVE_INFINITY
+        );
+
+        int result = -1;
+        float best = maxDistance * maxDistance;
+        for (int ring = 0; ring < gridSize; ring++) {
+            // cells in this ring are at least (ring - 1) cells far from the query
+            float ringDistance = Math.max(0, ring - 1) * ringWidth;
+            if (ringDistance * ringDistance > best) break;
+
+            for (int cy = cellY - ring; cy <= cellY + ring; cy++) {
+                if (cy < 0 || cy >= gridSize) continue;
+                boolean border = cy == cellY - ring || cy == cellY + ring;
+                int step = border ? 1 : Math.max(1, 2 * ring);
+                for (int cx = cellX - ring; cx <= cellX + ring; cx += step) {
+                    if (cx < 0 || cx >= gridSize) continue;
+                    int cell = cy * gridSize + cx;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = cellPoints[k];
+                        float dx = (data.getX(i) - x) * scaleX;
+                        float dy = (data.getY(i) - y) * scaleY;
+                        float distance = dx * dx + dy * dy;
+                        if (distance <= best) {
+                            best = distance;
+                            result = i;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
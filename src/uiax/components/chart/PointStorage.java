@@ -0,0 +1,187 @@
+package uiax.components.chart;
+
+/**
+ * PointStorage is the container that holds the points of a {@link PointDistribution}.
+ * <br>
+ * A storage keeps its {@link RunningStatistics} consistent with the points it holds: every point that enters
+ * or leaves the storage is reported to the statistics. Implementations decide how points are laid out in
+ * memory and which points are retained (e.g. all of them or only the most recent ones).
+ * <br>
+ * Points are mutated only through the owning {@link PointDistribution}, so a storage must not be shared
+ * between distributions.
+ */
+
+public abstract class PointStorage {
+    final RunningStatistics statistics = new RunningStatistics();
+    private final float[] extremes = new float[4];
+
+    /**
+     * Changes on every mutation.
+     */
+    long version;
+
+    /**
+     * Changes when stored points are replaced, removed or shifted; appending points doesn't change it.
+     */
+    long editVersion;
+
+    /**
+     * Counts the oldest points evicted to make room for appended points (see {@link #evictsOldest()}).
+     * Each eviction changes the {@link #editVersion} too.
+     */
+    long evicted;
+
+    PointStorage() {
+    }
+
+    /**
+     * @return the amount of points
+     */
+
+    public abstract int size();
+
+    /**
+     * @param i the index of the point between [0, size())
+     * @return the point's value on x-axis
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public abstract float getX(int i);
+
+    /**
+     * @param i the index of the point between [0, size())
+     * @return the point's value on y-axis
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public abstract float getY(int i);
+
+    /**
+     * Appends a new point.
+     */
+
+    abstract void add(float x, float y);
+
+    /**
+     * Replaces the specified point.
+     *
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    abstract void set(int i, float x, float y);
+
+    /**
+     * Removes the specified point.
+     *
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    abstract void remove(int i);
+
+    /**
+     * Removes all points.
+     */
+
+    abstract void clear();
+
+    /**
+     * Appends a sequence of points.
+     * <br>
+     * By default, points are appended one by one.
+     *
+     * @throws IndexOutOfBoundsException if the specified range exceeds one of the given arrays
+     */
+
+    void addAll(float[] x, float[] y, int offset, int length) {
+        checkRange(x, y, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            add(x[i], y[i]);
+        }
+    }
+
+    /**
+     * @return true if, when the storage is full, appending a point removes the first one
+     */
+
+    boolean evictsOldest() {
+        return false;
+    }
+
+    /**
+     * Returns the number of points evicted since the given state, when the points have only been appended
+     * and evicted since then; caches can then discard the evicted points instead of being rebuilt.
+     *
+     * @param editVersion the {@link #editVersion} of the given state
+     * @param evicted     the {@link #evicted} count of the given state
+     * @return the number of evicted points or -1 if the points have been changed otherwise
+     */
+
+    long evictedSince(long editVersion, long evicted) {
+        long count = this.evicted - evicted;
+        return this.editVersion - editVersion == count ? count : -1;
+    }
+
+    /**
+     * @return the bucket size, as a power of two, of the first level of the {@link MinMaxPyramid} that
+     * summarizes this storage. Larger values reduce the memory taken by the pyramid.
+     */
+
+    int lodBaseLevel() {
+        return 2;
+    }
+
+    /**
+     * @return true if the points are known to be sorted on the x-axis without scanning them.
+     * By default, the order is unknown and it's checked by scanning the points.
+     */
+
+    boolean isSortedOnX() {
+        return false;
+    }
+
+    /**
+     * @return true if the points can be read by several threads at once, so that scans can run in parallel
+     * (see {@link ParallelReduction}). By default, reads don't change the storage and are safe.
+     */
+
+    boolean allowsConcurrentReads() {
+        return true;
+    }
+
+    /**
+     * Recalculates the minimum and the maximum point and stores them into the statistics.
+     * <br>
+     * By default, it scans all the points, in parallel above {@link ParallelReduction#THRESHOLD} points.
+     * <br>
+     * Time required: T(n)
+     */
+
+    void extractExtremes() {
+        ParallelReduction.extremes(this, 0, size(), extremes);
+        statistics.setExtremes(extremes[0], extremes[1], extremes[2], extremes[3]);
+    }
+
+    /**
+     * Helper function. Checks that the given index is between [0, size).
+     *
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size}
+     */
+
+    static void checkIndex(int i, int size) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Helper function. Checks that the given range is valid for both arrays.
+     *
+     * @throws IndexOutOfBoundsException if the specified range exceeds one of the given arrays
+     */
+
+    static void checkRange(float[] x, float[] y, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > x.length || offset + length > y.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+        }
+    }
+}
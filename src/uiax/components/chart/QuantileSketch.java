@@ -0,0 +1,275 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * QuantileSketch estimates the quantiles of a stream of values in bounded memory (KLL sketch by
+ * Karnin, Lang and Liberty).
+ * <br>
+ * Values are kept in a stack of compactors: a value at level {@code h} stands for {@code 2^h} values of the
+ * stream. When a level is full, it is sorted and every other value is promoted to the next level, starting from
+ * a random offset. Lower levels are smaller than higher ones, so memory is bounded by about {@code 3k} values
+ * regardless of the stream length, while the rank error is about {@code 1.7 / k}.
+ * <br>
+ * Time required: amortized O(log(k)) to add a value.
+ */
+
+final class QuantileSketch {
+    private static final int K = 200;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private float[][] levels = new float[1][];
+    private int[] sizes = new int[1];
+    private int height = 1;
+    private int size;
+    private int maxSize;
+    private long count;
+    private final Random random = new Random(0x5EED);
+
+    // sorted summary for queries
+    private float[] summaryValues = new float[0];
+    private long[] summaryRanks = new long[0];
+    private int summarySize;
+    private boolean summaryValid;
+
+    public QuantileSketch() {
+        levels[0] = new float[capacity(0)];
+        maxSize = capacity(0);
+    }
+
+    /**
+     * Helper function. Returns the capacity of the specified level.
+     */
+
+    private int capacity(int level) {
+        int depth = height - level - 1;
+        return Math.max(2, (int) Math.ceil(K * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value to add
+     */
+
+    public void add(float value) {
+        if (sizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], 2 * levels[0].length);
+        }
+        levels[0][sizes[0]++] = value;
+        size++;
+        count++;
+        summaryValid = false;
+        if (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Removes all values. The level arrays are retained for the next values.
+     */
+
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        height = 1;
+        maxSize = capacity(0);
+        size = 0;
+        count = 0;
+        summaryValid = false;
+    }
+
+    /**
+     * Helper function. Adds a level on top of the others.
+     */
+
+    private void grow() {
+        height++;
+        if (levels.length < height) {
+            levels = Arrays.copyOf(levels, height);
+            sizes = Arrays.copyOf(sizes, height);
+        }
+        if (levels[height - 1] == null) {
+            levels[height - 1] = new float[capacity(height - 1) + 1];
+        }
+        maxSize = 0;
+        for (int h = 0; h < height; h++) {
+            maxSize += capacity(h);
+        }
+    }
+
+    /**
+     * Helper function. Compacts the full levels, from the bottom, until the sketch fits its maximum size.
+     */
+
+    private void compress() {
+        for (int h = 0; h < height; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == height) {
+                    grow();
+                }
+                compact(h);
+                if (size < maxSize) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper function. Sorts a level and promotes every other value to the next one.
+     * When the level has an odd length, its largest value remains.
+     */
+
+    private void compact(int h) {
+        float[] level = levels[h];
+        int length = sizes[h];
+        sort(level, 0, length - 1);
+
+        int promoted = length / 2;
+        int next = h + 1;
+        if (sizes[next] + promoted > levels[next].length) {
+            levels[next] = Arrays.copyOf(levels[next], Math.max(sizes[next] + promoted, 2 * levels[next].length));
+        }
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = 0; i < promoted; i++) {
+            levels[next][sizes[next]++] = level[2 * i + offset];
+        }
+
+        int remaining = length % 2;
+        if (remaining == 1) {
+            level[0] = level[length - 1];
+        }
+        sizes[h] = remaining;
+        size -= length - remaining - promoted;
+    }
+
+    /**
+     * Helper function. Sorts the retained values with their cumulative weights.
+     */
+
+    private void summarize() {
+        if (summaryValues.length < size) {
+            summaryValues = new float[size];
+            summaryRanks = new long[size];
+        }
+        summarySize = 0;
+        for (int h = 0; h < height; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                summaryValues[summarySize] = levels[h][i];
+                summaryRanks[summarySize] = 1L << h;
+                summarySize++;
+            }
+        }
+        sortByValue(0, summarySize - 1);
+        for (int i = 1; i < summarySize; i++) {
+            summaryRanks[i] += summaryRanks[i - 1];
+        }
+        summaryValid = true;
+    }
+
+    /**
+     * Helper function. In-place quicksort of a level. Unlike {@link Arrays#sort(float[], int, int)},
+     * it never allocates a work array.
+     */
+
+    private static void sort(float[] level, int low, int high) {
+        while (low < high) {
+            float pivot = level[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (level[i] < pivot) i++;
+                while (level[j] > pivot) j--;
+                if (i <= j) {
+                    float value = level[i];
+                    level[i] = level[j];
+                    level[j] = value;
+                    i++;
+                    j--;
+                }
+            }
+            // recurses on the smaller side
+            if (j - low < high - i) {
+                sort(level, low, j);
+                low = i;
+            } else {
+                sort(level, i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Helper function. Quicksort of the summary values along with their weights.
+     */
+
+    private void sortByValue(int low, int high) {
+        while (low < high) {
+            float pivot = summaryValues[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (summaryValues[i] < pivot) i++;
+                while (summaryValues[j] > pivot) j--;
+                if (i <= j) {
+                    float value = summaryValues[i];
+                    summaryValues[i] = summaryValues[j];
+                    summaryValues[j] = value;
+                    long weight = summaryRanks[i];
+                    summaryRanks[i] = summaryRanks[j];
+                    summaryRanks[j] = weight;
+                    i++;
+                    j--;
+                }
+            }
+            // recurses on the smaller side
+            if (j - low < high - i) {
+                sortByValue(low, j);
+                low = i;
+            } else {
+                sortByValue(i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Estimates the value below which the given fraction of the values falls.
+     * <br>
+     * Time required: O(log(k)) after the first query following an update, O(k * log(k)) otherwise
+     *
+     * @param q the quantile between [0, 1]
+     * @return the estimated quantile or NaN if the sketch is empty
+     */
+
+    public float getQuantile(double q) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        if (!summaryValid) {
+            summarize();
+        }
+        long total = summaryRanks[summarySize - 1];
+        long rank = Math.max(1L, (long) Math.ceil(q * total));
+        int low = 0;
+        int high = summarySize - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (summaryRanks[middle] < rank) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return summaryValues[low];
+    }
+
+    /**
+     * @return the amount of values added to the sketch
+     */
+
+    public long count() {
+        return count;
+    }
+}
@@ -0,0 +1,238 @@
+package uiax.components.chart;
+
+/**
+ * RegressionOverlay draws the least-squares line of the points of a distribution.
+ * <br>
+ * The line is kept up to date from streamed sums: means and co-moments are updated as in Welford's algorithm,
+ * which is equivalent to the sums of x, y, xy and x^2 but doesn't lose precision when the x-values are large
+ * (e.g. timestamps). The line is drawn between the smallest and the largest x-value.
+ * <br>
+ * The sums are also kept for each block of 256 consecutive points, so the points evicted by a {@link RingStorage}
+ * are removed by subtracting the blocks they fill; a block that is only partly evicted is summed again from its
+ * remaining points. Since subtractions accumulate rounding errors, the blocks are merged again once the evicted
+ * points reach the window size.
+ * <br>
+ * Time required: O(1) for each appended point, amortized O(1) for each evicted point
+ * <br>
+ * Space required: O(n / 256)
+ */
+
+public final class RegressionOverlay extends Overlay {
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private final Moments total = new Moments();
+    private float xMin;
+    private float xMax;
+
+    // ring of the moments of each block; the first block may miss its evicted points
+    private Moments[] blocks = new Moments[0];
+    private int headBlock;
+    private int blockCount;
+    private long firstBlock;
+    private final Moments scratch = new Moments();
+    // sequence numbers of the first point and of the next appended point
+    private long first;
+    private long end;
+    private long evictedSinceMerge;
+
+    @Override
+    void reset() {
+        total.clear();
+        xMin = Float.POSITIVE_INFINITY;
+        xMax = Float.NEGATIVE_INFINITY;
+        headBlock = 0;
+        blockCount = 0;
+        firstBlock = 0;
+        first = 0;
+        end = 0;
+        evictedSinceMerge = 0;
+    }
+
+    /**
+     * Helper function. Returns the moments of the specified block of the ring.
+     */
+
+    private Moments block(int k) {
+        int slot = headBlock + k;
+        return blocks[slot >= blocks.length ? slot - blocks.length : slot];
+    }
+
+    /**
+     * Helper function. Appends an empty block to the ring.
+     */
+
+    private void pushBlock() {
+        if (blockCount == blocks.length) {
+            Moments[] newBlocks = new Moments[Math.max(16, 2 * blocks.length)];
+            for (int k = 0; k < blockCount; k++) {
+                newBlocks[k] = block(k);
+            }
+            for (int k = blockCount; k < newBlocks.length; k++) {
+                newBlocks[k] = new Moments();
+            }
+            blocks = newBlocks;
+            headBlock = 0;
+        }
+        blockCount++;
+        block(blockCount - 1).clear();
+    }
+
+    @Override
+    void append(float x, float y) {
+        long blockIndex = end >> BLOCK_SHIFT;
+        if (blockCount == 0) {
+            firstBlock = blockIndex;
+            pushBlock();
+        } else if (blockIndex == firstBlock + blockCount) {
+            pushBlock();
+        }
+        block((int) (blockIndex - firstBlock)).push(x, y);
+        total.push(x, y);
+        end++;
+        if (x < xMin) xMin = x;
+        if (x > xMax) xMax = x;
+    }
+
+    @Override
+    boolean evict(PointStorage data, int count, int remaining) {
+        first += count;
+        // discards the blocks of the evicted points
+        while (blockCount > 0 && firstBlock < first >> BLOCK_SHIFT) {
+            total.subtract(block(0));
+            headBlock = headBlock + 1 == blocks.length ? 0 : headBlock + 1;
+            blockCount--;
+            firstBlock++;
+        }
+        // sums the partly evicted block again from its remaining points
+        if (blockCount > 0 && (first & BLOCK_MASK) != 0) {
+            int length = (int) (Math.min(end, (firstBlock + 1) << BLOCK_SHIFT) - first);
+            scratch.clear();
+            for (int i = 0; i < length; i++) {
+                scratch.push(data.getX(i), data.getY(i));
+            }
+            total.subtract(block(0));
+            total.merge(scratch);
+            block(0).set(scratch);
+        }
+
+        evictedSinceMerge += count;
+        if (evictedSinceMerge >= remaining) {
+            evictedSinceMerge = 0;
+            total.clear();
+            for (int k = 0; k < blockCount; k++) {
+                total.merge(block(k));
+            }
+        }
+
+        // the extremes of the remaining points are read from the distribution
+        if (data.statistics.isExtremesCorrupted()) {
+            data.extractExtremes();
+        }
+        xMin = data.size() == 0 ? Float.POSITIVE_INFINITY : data.statistics.getMin(0);
+        xMax = data.size() == 0 ? Float.NEGATIVE_INFINITY : data.statistics.getMax(0);
+        return true;
+    }
+
+    @Override
+    void complete() {
+        series.clear();
+        if (total.m2x > 0d) {
+            series.add(xMin, (float) (getIntercept() + getSlope() * xMin));
+            series.add(xMax, (float) (getIntercept() + getSlope() * xMax));
+        }
+    }
+
+    /**
+     * Returns the slope of the line. The line is updated when the distribution is drawn.
+     *
+     * @return the slope or NaN if the points don't have at least two different x-values
+     */
+
+    public double getSlope() {
+        return total.m2x > 0d ? total.cxy / total.m2x : Double.NaN;
+    }
+
+    /**
+     * Returns the value of the line on the y-axis at {@code x = 0}. The line is updated when the distribution
+     * is drawn.
+     *
+     * @return the intercept or NaN if the points don't have at least two different x-values
+     */
+
+    public double getIntercept() {
+        return total.m2x > 0d ? total.meanY - getSlope() * total.meanX : Double.NaN;
+    }
+
+    /**
+     * Moments holds the means, the sum of squared deviations on the x-axis and the co-moment of a set of points.
+     * Sets are merged and subtracted with the parallel algorithm by Chan et al.
+     */
+
+    private static final class Moments {
+        long count;
+        double meanX;
+        double meanY;
+        double m2x;
+        double cxy;
+
+        void clear() {
+            count = 0;
+            meanX = meanY = m2x = cxy = 0d;
+        }
+
+        void set(Moments other) {
+            count = other.count;
+            meanX = other.meanX;
+            meanY = other.meanY;
+            m2x = other.m2x;
+            cxy = other.cxy;
+        }
+
+        void push(float x, float y) {
+            count++;
+            double dx = x - meanX;
+            meanX += dx / count;
+            meanY += (y - meanY) / count;
+            m2x += dx * (x - meanX);
+            cxy += dx * (y - meanY);
+        }
+
+        void merge(Moments other) {
+            if (other.count == 0) {
+                return;
+            }
+            long merged = count + other.count;
+            double dx = other.meanX - meanX;
+            double dy = other.meanY - meanY;
+            double factor = (double) count * other.count / merged;
+            m2x += other.m2x + dx * dx * factor;
+            cxy += other.cxy + dx * dy * factor;
+            meanX += dx * other.count / merged;
+            meanY += dy * other.count / merged;
+            count = merged;
+        }
+
+        /**
+         * Removes a subset of the points, previously merged into these moments.
+         */
+
+        void subtract(Moments part) {
+            long rest = count - part.count;
+            if (rest <= 0) {
+                clear();
+                return;
+            }
+            double restMeanX = (count * meanX - part.count * part.meanX) / rest;
+            double restMeanY = (count * meanY - part.count * part.meanY) / rest;
+            double dx = part.meanX - restMeanX;
+            double dy = part.meanY - restMeanY;
+            double factor = (double) part.count * rest / count;
+            m2x = Math.max(0d, m2x - part.m2x - dx * dx * factor);
+            cxy -= part.cxy + dx * dy * factor;
+            meanX = restMeanX;
+            meanY = restMeanY;
+            count = rest;
+        }
+    }
+}
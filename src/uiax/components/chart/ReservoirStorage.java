@@ -0,0 +1,232 @@
+package uiax.components.chart;
+
+import java.util.Random;
+
+/**
+ * ReservoirStorage retains a uniform random sample of fixed size of all the points added to it, so that an
+ * unbounded stream of points can be plotted in bounded memory and with a bounded draw cost.
+ * <br>
+ * The sample is maintained with reservoir sampling (Li's Algorithm L): once the first {@code capacity} points
+ * have been seen, each new point replaces a random sampled point with probability {@code capacity / seen}.
+ * Instead of drawing a random number for every point, the amount of points to skip before the next replacement
+ * is drawn, so the points that aren't sampled cost O(1) each and bulk insertions jump straight to the sampled ones.
+ * <br>
+ * Unlike the other storages, the statistics describe all the points that have been added, not only the sampled
+ * ones: minimum, maximum, mean and standard deviation are exact for the whole stream. Replacing or removing
+ * a point (see {@link PointDistribution#set(int, float, float)} and {@link PointDistribution#remove(int)})
+ * removes it from the statistics too; if it was an extreme, the extremes are recalculated from the sample.
+ * <br>
+ * Sampled points aren't in insertion order, so they are meant to be drawn as a scatter plot, without lines.
+ * A replacement changes a point in place, so the caches that depend on the point order are rebuilt,
+ * in O(capacity), on the next draw.
+ */
+
+public final class ReservoirStorage extends PointStorage {
+    private final float[] xs;
+    private final float[] ys;
+    private final int capacity;
+    private final Random random;
+    private int size;
+
+    // Algorithm L
+    private long seen;
+    private long next;
+    private double w;
+
+    /**
+     * Creates a new ReservoirStorage with a fixed random seed, so that the same stream gives the same sample.
+     *
+     * @param capacity the size of the sample
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+
+    public ReservoirStorage(int capacity) {
+        this(capacity, 0x5EED);
+    }
+
+    /**
+     * Creates a new ReservoirStorage.
+     *
+     * @param capacity the size of the sample
+     * @param seed     the seed of the random sampling
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+
+    public ReservoirStorage(int capacity, long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity can not be < 1");
+        }
+        this.capacity = capacity;
+        xs = new float[capacity];
+        ys = new float[capacity];
+        random = new Random(seed);
+    }
+
+    /**
+     * Helper function. Returns a random number between (0, 1].
+     */
+
+    private double uniform() {
+        return 1d - random.nextDouble();
+    }
+
+    /**
+     * Helper function. Schedules the next replacement after the current point, whose index is {@code seen}.
+     */
+
+    private void scheduleNext() {
+        double skip = Math.floor(Math.log(uniform()) / Math.log(1d - w));
+        next = skip < Long.MAX_VALUE - seen - 1 ? seen + 1 + (long) skip : Long.MAX_VALUE;
+    }
+
+    /**
+     * Helper function. Offers the current point to the sample.
+     *
+     * @return true if a sampled point has been replaced
+     */
+
+    private boolean sample(float x, float y) {
+        boolean replaced = false;
+        if (seen < capacity) {
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+            if (seen + 1 == capacity) {
+                w = Math.exp(Math.log(uniform()) / capacity);
+                scheduleNext();
+            }
+        } else if (seen == next) {
+            int slot = random.nextInt(capacity);
+            if (slot >= size) {
+                // the slot of a removed point is filled
+                slot = size++;
+            } else {
+                replaced = true;
+            }
+            xs[slot] = x;
+            ys[slot] = y;
+            w *= Math.exp(Math.log(uniform()) / capacity);
+            scheduleNext();
+        }
+        seen++;
+        return replaced;
+    }
+
+    @Override
+    void add(float x, float y) {
+        statistics.add(x, y);
+        if (sample(x, y)) {
+            editVersion++;
+        }
+    }
+
+    /**
+     * Appends a sequence of points. Once the sample is full, only the points to sample are visited.
+     * <br>
+     * Time required: O(k) to sample, where k is the amount of replaced points, plus T(length) for the statistics
+     */
+
+    @Override
+    void addAll(float[] x, float[] y, int offset, int length) {
+        checkRange(x, y, offset, length);
+        statistics.addAll(x, y, offset, length);
+
+        boolean replaced = false;
+        int i = offset;
+        int end = offset + length;
+        while (i < end) {
+            if (seen >= capacity) {
+                // skips the points that aren't sampled
+                long skip = Math.min(next - seen, end - i);
+                i += (int) skip;
+                seen += skip;
+                if (i == end) {
+                    break;
+                }
+            }
+            replaced |= sample(x[i], y[i]);
+            i++;
+        }
+        if (replaced) {
+            editVersion++;
+        }
+    }
+
+    @Override
+    void set(int i, float x, float y) {
+        checkIndex(i, size);
+        statistics.remove(xs[i], ys[i]);
+        xs[i] = x;
+        ys[i] = y;
+        statistics.add(x, y);
+    }
+
+    /**
+     * Removes the specified point and shifts the following points to the left. The point is removed from the
+     * statistics of the whole stream too.
+     * <br>
+     * Once the first {@code capacity} points have been seen, the sampling goes on at the same rate: the free
+     * slot is filled only when a later point is sampled and the replaced slot falls on it.
+     */
+
+    @Override
+    void remove(int i) {
+        checkIndex(i, size);
+        statistics.remove(xs[i], ys[i]);
+        System.arraycopy(xs, i + 1, xs, i, size - i - 1);
+        System.arraycopy(ys, i + 1, ys, i, size - i - 1);
+        size--;
+    }
+
+    @Override
+    void clear() {
+        size = 0;
+        seen = 0;
+        statistics.clear();
+    }
+
+    /**
+     * Recalculates the extremes from the sample only when they aren't valid, since the extremes of all the
+     * added points can't be recovered from the sample.
+     */
+
+    @Override
+    void extractExtremes() {
+        if (statistics.isExtremesCorrupted()) {
+            super.extractExtremes();
+        }
+    }
+
+    @Override
+    public float getX(int i) {
+        checkIndex(i, size);
+        return xs[i];
+    }
+
+    @Override
+    public float getY(int i) {
+        checkIndex(i, size);
+        return ys[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the size of the sample
+     */
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the amount of points added since the storage has been created or cleared
+     */
+
+    public long seen() {
+        return seen;
+    }
+}
@@ -0,0 +1,311 @@
+package uiax.components.chart;
+
+/**
+ * RingStorage is a fixed-capacity storage that retains only the most recent points (sliding window).
+ * <br>
+ * Points are stored in two primitive ring buffers: when the storage is full, appending a point evicts the
+ * oldest one in O(1), without shifting the others. Points are accessed in logical order, from the oldest
+ * to the most recent, without copying.
+ * <br>
+ * Statistics are the ones of the window: mean and standard deviation are updated in O(1) for each appended or
+ * evicted point, while minimum and maximum are read in O(1) from four monotonic deques. Since evictions apply
+ * the inverse Welford update, mean and variance are summed again from the window once every {@code capacity}
+ * evictions, so that rounding errors don't accumulate over long streams (amortized O(1) for each point).
+ * <br>
+ * Removing the oldest point costs O(1). Replacing or removing any other point costs T(n) and forces
+ * the deques to be rebuilt on the next extreme query.
+ */
+
+public final class RingStorage extends PointStorage {
+    private final float[] xs;
+    private final float[] ys;
+    private final int capacity;
+    private int head;
+    private int size;
+    private long firstSequence;
+    private int evictionsSinceSummary;
+    private final double[] mean = new double[2];
+    private final double[] m2 = new double[2];
+
+    private final MonotonicDeque minX;
+    private final MonotonicDeque maxX;
+    private final MonotonicDeque minY;
+    private final MonotonicDeque maxY;
+    private boolean corruptedDeques;
+
+    /**
+     * Creates a new RingStorage.
+     *
+     * @param capacity the maximum amount of points in the window
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+
+    public RingStorage(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity can not be < 1");
+        }
+        this.capacity = capacity;
+        xs = new float[capacity];
+        ys = new float[capacity];
+
+        minX = new MonotonicDeque(xs, true);
+        maxX = new MonotonicDeque(xs, false);
+        minY = new MonotonicDeque(ys, true);
+        maxY = new MonotonicDeque(ys, false);
+    }
+
+    /**
+     * Helper function. Maps a logical index to a physical one.
+     */
+
+    private int physical(int i) {
+        int result = head + i;
+        return result >= capacity ? result - capacity : result;
+    }
+
+    /**
+     * Helper function. Removes the oldest point in O(1).
+     */
+
+    private void evictOldest() {
+        statistics.remove(xs[head], ys[head]);
+        head = physical(1);
+        size--;
+        firstSequence++;
+        evictionsSinceSummary++;
+        evicted++;
+        editVersion++;
+
+        if (!corruptedDeques) {
+            minX.evict(firstSequence);
+            maxX.evict(firstSequence);
+            minY.evict(firstSequence);
+            maxY.evict(firstSequence);
+        }
+    }
+
+    @Override
+    void add(float x, float y) {
+        if (size == capacity) {
+            evictOldest();
+        }
+
+        int slot = physical(size);
+        xs[slot] = x;
+        ys[slot] = y;
+        long sequence = firstSequence + size;
+        size++;
+        statistics.add(x, y);
+
+        if (!corruptedDeques) {
+            minX.push(sequence);
+            maxX.push(sequence);
+            minY.push(sequence);
+            maxY.push(sequence);
+        }
+
+        if (evictionsSinceSummary >= capacity) {
+            evictionsSinceSummary = 0;
+            summarize();
+        }
+    }
+
+    /**
+     * Helper function. Sums mean and variance again from the window points (two-pass algorithm), discarding
+     * the rounding errors accumulated by the inverse updates.
+     * <br>
+     * Time required: T(n)
+     */
+
+    private void summarize() {
+        mean[0] = mean[1] = m2[0] = m2[1] = 0d;
+        for (int i = 0; i < size; i++) {
+            int slot = physical(i);
+            mean[0] += xs[slot];
+            mean[1] += ys[slot];
+        }
+        mean[0] /= size;
+        mean[1] /= size;
+        for (int i = 0; i < size; i++) {
+            int slot = physical(i);
+            double dx = xs[slot] - mean[0];
+            double dy = ys[slot] - mean[1];
+            m2[0] += dx * dx;
+            m2[1] += dy * dy;
+        }
+        statistics.restore(size, mean, m2);
+    }
+
+    @Override
+    void set(int i, float x, float y) {
+        checkIndex(i, size);
+        int slot = physical(i);
+        statistics.remove(xs[slot], ys[slot]);
+        xs[slot] = x;
+        ys[slot] = y;
+        statistics.add(x, y);
+        corruptedDeques = true;
+    }
+
+    @Override
+    void remove(int i) {
+        checkIndex(i, size);
+        if (i == 0) {
+            evictOldest();
+        } else {
+            int slot = physical(i);
+            statistics.remove(xs[slot], ys[slot]);
+            for (int j = i; j < size - 1; j++) {
+                int to = physical(j);
+                int from = physical(j + 1);
+                xs[to] = xs[from];
+                ys[to] = ys[from];
+            }
+            size--;
+            corruptedDeques = true;
+        }
+    }
+
+    @Override
+    void clear() {
+        head = 0;
+        size = 0;
+        firstSequence = 0;
+        evictionsSinceSummary = 0;
+        minX.clear();
+        maxX.clear();
+        minY.clear();
+        maxY.clear();
+        corruptedDeques = false;
+        statistics.clear();
+    }
+
+    @Override
+    boolean evictsOldest() {
+        return true;
+    }
+
+    /**
+     * Reads the window extremes from the deques. Deques are rebuilt when a point has been replaced
+     * or removed from the middle of the window.
+     * <br>
+     * Time required: O(1), T(n) when the deques must be rebuilt
+     */
+
+    @Override
+    void extractExtremes() {
+        if (corruptedDeques) {
+            corruptedDeques = false;
+            minX.clear();
+            maxX.clear();
+            minY.clear();
+            maxY.clear();
+            for (int i = 0; i < size; i++) {
+                long sequence = firstSequence + i;
+                minX.push(sequence);
+                maxX.push(sequence);
+                minY.push(sequence);
+                maxY.push(sequence);
+            }
+        }
+
+        if (size == 0) {
+            statistics.setExtremes(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                    Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        } else {
+            statistics.setExtremes(minX.frontValue(), minY.frontValue(), maxX.frontValue(), maxY.frontValue());
+        }
+    }
+
+    @Override
+    public float getX(int i) {
+        checkIndex(i, size);
+        return xs[physical(i)];
+    }
+
+    @Override
+    public float getY(int i) {
+        checkIndex(i, size);
+        return ys[physical(i)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum amount of points in the window
+     */
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * MonotonicDeque holds the sequence numbers of the window points whose values are monotonic
+     * (increasing for a minimum deque, decreasing for a maximum deque). Its front is the window extreme.
+     */
+
+    private final class MonotonicDeque {
+        private final long[] sequences;
+        private final float[] column;
+        private final boolean minimum;
+        private int front;
+        private int length;
+
+        MonotonicDeque(float[] column, boolean minimum) {
+            this.column = column;
+            this.minimum = minimum;
+            sequences = new long[capacity];
+        }
+
+        private float valueOf(long sequence) {
+            return column[(int) (sequence % capacity)];
+        }
+
+        private int backIndex() {
+            int result = front + length - 1;
+            return result >= capacity ? result - capacity : result;
+        }
+
+        void clear() {
+            front = 0;
+            length = 0;
+        }
+
+        /**
+         * Pushes the given sequence and discards the values dominated by it.
+         */
+
+        void push(long sequence) {
+            float value = valueOf(sequence);
+            while (length > 0) {
+                float back = valueOf(sequences[backIndex()]);
+                if (minimum ? back >= value : back <= value) {
+                    length--;
+                } else {
+                    break;
+                }
+            }
+            int slot = front + length;
+            sequences[slot >= capacity ? slot - capacity : slot] = sequence;
+            length++;
+        }
+
+        /**
+         * Discards the sequences that are older than the given one.
+         */
+
+        void evict(long firstSequence) {
+            while (length > 0 && sequences[front] < firstSequence) {
+                front = front + 1 == capacity ? 0 : front + 1;
+                length--;
+            }
+        }
+
+        float frontValue() {
+            return valueOf(sequences[front]);
+        }
+    }
+}
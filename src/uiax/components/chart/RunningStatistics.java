@@ -0,0 +1,248 @@
+package uiax.components.chart;
+
+import java.util.Arrays;
+
+/**
+ * RunningStatistics keeps the statistics of a stream of bi-dimensional points up to date in O(1) for each point.
+ * <br>
+ * Mean and variance are tracked with Welford's algorithm. Removing a point applies the inverse update, so
+ * they aren't recalculated from scratch. The inverse update accumulates rounding errors: owners that remove
+ * points continuously (e.g. {@link RingStorage}) periodically sum them again and {@link #restore(long, double[],
+ * double[])} them.
+ * <br>
+ * Statistics of separate streams can be merged (see {@link #merge(RunningStatistics)}), so a large sequence of
+ * points is summarized in parallel, on the fork/join pool, above {@link ParallelReduction#THRESHOLD} points.
+ * <br>
+ * Minimum and maximum are tracked incrementally on insertion. When an extreme point is removed, they are marked as
+ * corrupted and the owner has to recompute them with {@link #setExtremes(float, float, float, float)}.
+ */
+
+final class RunningStatistics {
+    private long count;
+    private final double[] mean = new double[2];
+    private final double[] m2 = new double[2];
+
+    private final float[] min = new float[2];
+    private final float[] max = new float[2];
+    private boolean corruptedExtremes;
+
+    public RunningStatistics() {
+        clear();
+    }
+
+    /**
+     * Resets the statistics to the ones of an empty distribution.
+     */
+
+    public void clear() {
+        count = 0;
+        Arrays.fill(mean, 0d);
+        Arrays.fill(m2, 0d);
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        corruptedExtremes = false;
+    }
+
+    /**
+     * Helper function. Welford's update of the specified axis.
+     */
+
+    private void push(int axis, float value) {
+        double delta = value - mean[axis];
+        mean[axis] += delta / count;
+        m2[axis] += delta * (value - mean[axis]);
+    }
+
+    /**
+     * Helper function. Inverse Welford's update of the specified axis.
+     */
+
+    private void pop(int axis, float value) {
+        double oldMean = mean[axis];
+        mean[axis] = (oldMean * (count + 1) - value) / count;
+        m2[axis] = Math.max(0d, m2[axis] - (value - oldMean) * (value - mean[axis]));
+    }
+
+    /**
+     * Adds a point to the statistics.
+     * <br>
+     * Time required: O(1)
+     */
+
+    public void add(float x, float y) {
+        count++;
+        push(0, x);
+        push(1, y);
+
+        if (!corruptedExtremes) {
+            if (x < min[0]) min[0] = x;
+            if (y < min[1]) min[1] = y;
+            if (x > max[0]) max[0] = x;
+            if (y > max[1]) max[1] = y;
+        }
+    }
+
+    /**
+     * Adds a sequence of points to the statistics.
+     * <br>
+     * Time required: T(n), divided among the fork/join workers above {@link ParallelReduction#THRESHOLD} points
+     */
+
+    public void addAll(float[] x, float[] y, int offset, int length) {
+        if (length >= ParallelReduction.THRESHOLD) {
+            merge(ParallelReduction.summarize(x, y, offset, offset + length));
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                add(x[i], y[i]);
+            }
+        }
+    }
+
+    /**
+     * Merges the statistics of another stream of points into these ones (parallel algorithm by Chan et al.).
+     * <br>
+     * Time required: O(1)
+     *
+     * @param other a not null RunningStatistics with exact extremes
+     */
+
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        for (int axis = 0; axis < 2; axis++) {
+            double delta = other.mean[axis] - mean[axis];
+            mean[axis] += delta * other.count / total;
+            m2[axis] += other.m2[axis] + delta * delta * ((double) count * other.count / total);
+        }
+        count = total;
+
+        if (!corruptedExtremes) {
+            for (int axis = 0; axis < 2; axis++) {
+                if (other.min[axis] < min[axis]) min[axis] = other.min[axis];
+                if (other.max[axis] > max[axis]) max[axis] = other.max[axis];
+            }
+        }
+    }
+
+    /**
+     * Removes a point, previously added, from the statistics.
+     * <br>
+     * Time required: O(1)
+     */
+
+    public void remove(float x, float y) {
+        if (count <= 1) {
+            clear();
+            return;
+        }
+
+        count--;
+        pop(0, x);
+        pop(1, y);
+
+        if (x <= min[0] || y <= min[1] || x >= max[0] || y >= max[1]) {
+            corruptedExtremes = true;
+        }
+    }
+
+    /**
+     * Sets the exact extremes after a recalculation.
+     */
+
+    public void setExtremes(float minX, float minY, float maxX, float maxY) {
+        min[0] = minX;
+        min[1] = minY;
+        max[0] = maxX;
+        max[1] = maxY;
+        corruptedExtremes = false;
+    }
+
+    /**
+     * Restores the statistics of a previously summarized stream, e.g. read from a file.
+     * Extremes must be restored with {@link #setExtremes(float, float, float, float)}.
+     *
+     * @param count the amount of points
+     * @param mean  the mean value of each axis
+     * @param m2    the sum of squared deviations from the mean of each axis
+     */
+
+    public void restore(long count, double[] mean, double[] m2) {
+        this.count = count;
+        System.arraycopy(mean, 0, this.mean, 0, 2);
+        System.arraycopy(m2, 0, this.m2, 0, 2);
+    }
+
+    /**
+     * @param axis 0 for the x-axis, 1 for the y-axis
+     * @return the mean value, in double precision, on the specified axis
+     */
+
+    public double getExactMean(int axis) {
+        return mean[axis];
+    }
+
+    /**
+     * @param axis 0 for the x-axis, 1 for the y-axis
+     * @return the sum of squared deviations from the mean on the specified axis
+     */
+
+    public double getSquaredDeviations(int axis) {
+        return m2[axis];
+    }
+
+    /**
+     * @return true if minimum and maximum must be recalculated
+     */
+
+    public boolean isExtremesCorrupted() {
+        return corruptedExtremes;
+    }
+
+    /**
+     * @param axis 0 for the x-axis, 1 for the y-axis
+     * @return the minimum value on the specified axis
+     */
+
+    public float getMin(int axis) {
+        return min[axis];
+    }
+
+    /**
+     * @param axis 0 for the x-axis, 1 for the y-axis
+     * @return the maximum value on the specified axis
+     */
+
+    public float getMax(int axis) {
+        return max[axis];
+    }
+
+    /**
+     * @param axis 0 for the x-axis, 1 for the y-axis
+     * @return the mean value on the specified axis or NaN if there are no points
+     */
+
+    public float getMean(int axis) {
+        return count == 0 ? Float.NaN : (float) mean[axis];
+    }
+
+    /**
+     * @param axis            0 for the x-axis, 1 for the y-axis
+     * @param correctVariance true to calculate variance as sum( (xi - ux)^2 ) / (n+1)
+     * @return the standard deviation on the specified axis
+     */
+
+    public float getStandardDeviation(int axis, boolean correctVariance) {
+        long size = count + (correctVariance ? 1 : 0);
+        return size == 0 ? Float.NaN : (float) Math.sqrt(m2[axis] / size);
+    }
+
+    /**
+     * @return the amount of points tracked
+     */
+
+    public long count() {
+        return count;
+    }
+}
@@ -0,0 +1,209 @@
+package uiax.components.chart;
+
+import uia.application.ui.component.utility.ComponentUtility;
+import uia.utility.MathUtility;
+
+import java.util.Arrays;
+
+/**
+ * ScreenProjection caches the screen-space position of the points rendered by a {@link DrawableDistribution}.
+ * <br>
+ * The cache is keyed on the component bounds and rotation, the viewport dimension and the axis range.
+ * When the key doesn't change, only the points that the {@link Decimator} reports as new are projected:
+ * a static chart is redrawn with no per-point math and a growing one projects only its appended tail.
+ * <br>
+ * Large projections, e.g. the first frame of an undecimated distribution, are split among the fork/join workers
+ * (see {@link ParallelReduction}).
+ */
+
+final class ScreenProjection {
+    private static final int KEY_LENGTH = 11;
+
+    private final float[] key = new float[KEY_LENGTH];
+    private float[] vertices = new float[64];
+    private int size;
+
+    // parallel projection, created once so that no lambda is allocated on each frame
+    private PointStorage pendingData;
+    private Decimator pendingDecimator;
+    private final ParallelReduction.RangeAction projectAction =
+            (start, end) -> projectRange(pendingData, pendingDecimator, start, end);
+
+    public ScreenProjection() {
+        Arrays.fill(key, Float.NaN);
+    }
+
+    /**
+     * Calculates the point position according to the component viewport.
+     * The screen position is stored in {@code target[offset]} and {@code target[offset + 1]}.
+     */
+
+    static void calculatePosition(float[] target, int offset,
+                                  float[] componentBounds,
+                                  float viewportWidth, float viewportHeight,
+                                  float pointX, float pointY, float rotation,
+                                  float minPointX, float maxPointX,
+                                  float minPointY, float maxPointY) {
+        float xDist = viewportWidth * (MathUtility.normalize(pointX, minPointX, maxPointX) - 0.5f);
+        float yDist = -viewportHeight * (MathUtility.normalize(pointY, minPointY, maxPointY) - 0.5f);
+        target[offset] = ComponentUtility.getPositionOnX(
+                componentBounds[0], componentBounds[2], xDist, yDist, rotation);
+        target[offset + 1] = ComponentUtility.getPositionOnY(
+                componentBounds[1], componentBounds[3], xDist, yDist, rotation);
+    }
+
+    /**
+     * Helper function. Updates an entry of the cache key.
+     *
+     * @return true if the entry has changed
+     */
+
+    private boolean updateKey(int i, float value) {
+        if (Float.compare(key[i], value) != 0) {
+            key[i] = value;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Projects the points selected by the given {@link Decimator}.
+     *
+     * @param data      the points to project
+     * @param decimator the {@link Decimator} that selects the points to render; it must be up to date
+     * @param bounds    the component bounds
+     * @param width     the viewport width
+     * @param height    the viewport height
+     * @param rotation  the component rotation
+     * @return the number of points that have been projected during this call
+     */
+
+    public int project(PointStorage data, Decimator decimator,
+                       float[] bounds, float width, float height, float rotation,
+                       float xMin, float xMax, float yMin, float yMax) {
+        // non-short-circuit: every entry must be updated
+        boolean changed = updateKey(0, bounds[0]) | updateKey(1, bounds[1])
+                | updateKey(2, bounds[2]) | updateKey(3, bounds[3])
+                | updateKey(4, rotation) | updateKey(5, width) | updateKey(6, height)
+                | updateKey(7, xMin) | updateKey(8, xMax) | updateKey(9, yMin) | updateKey(10, yMax);
+        int points = decimator.size();
+        int from = changed ? 0 : Math.min(size, decimator.unchanged());
+
+        if (vertices.length < 2 * points) {
+            vertices = Arrays.copyOf(vertices, Math.max(2 * points, 2 * vertices.length));
+        }
+
+        if (points - from < ParallelReduction.THRESHOLD || !data.allowsConcurrentReads()) {
+            projectRange(data, decimator, from, points);
+        } else {
+            pendingData = data;
+            pendingDecimator = decimator;
+            ParallelReduction.forEach(from, points, projectAction);
+            pendingData = null;
+            pendingDecimator = null;
+        }
+        size = points;
+        return points - from;
+    }
+
+    /**
+     * Helper function. Projects the specified range of the points selected by the {@link Decimator},
+     * with the parameters stored in the cache key.
+     */
+
+    private void projectRange(PointStorage data, Decimator decimator, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i = decimator.get(k);
+            calculatePosition(vertices, 2 * k, key, key[5], key[6], data.getX(i), data.getY(i),
+                    key[4], key[7], key[8], key[9], key[10]);
+        }
+    }
+
+    /**
+     * @return true if at least one projection has been done
+     */
+
+    public boolean isValid() {
+        return !Float.isNaN(key[0]);
+    }
+
+    /**
+     * Projects a single point with the parameters of the last projection.
+     *
+     * @param target a not null array where the screen position is stored
+     */
+
+    public void project(float x, float y, float[] target) {
+        // the first four key entries are the component bounds
+        calculatePosition(target, 0, key, key[5], key[6], x, y, key[4], key[7], key[8], key[9], key[10]);
+    }
+
+    /**
+     * Maps a screen position back to the data space of the last projection.
+     *
+     * @param screenX the position on the x-axis, in pixels
+     * @param screenY the position on the y-axis, in pixels
+     * @param target  a not null array where the data position is stored
+     */
+
+    public void unproject(float screenX, float screenY, float[] target) {
+        float dx = screenX - (key[0] + 0.5f * key[2]);
+        float dy = screenY - (key[1] + 0.5f * key[3]);
+        float inverseRotation = MathUtility.TWO_PI - key[4];
+        float xDist = MathUtility.rotateX(dx, dy, inverseRotation);
+        float yDist = MathUtility.rotateY(dx, dy, inverseRotation);
+        target[0] = key[7] + (xDist / key[5] + 0.5f) * (key[8] - key[7]);
+        target[1] = key[9] + (0.5f - yDist / key[6]) * (key[10] - key[9]);
+    }
+
+    /**
+     * @return true if the last projection has been done with the given axis range
+     */
+
+    public boolean hasRange(float xMin, float xMax, float yMin, float yMax) {
+        return Float.compare(key[7], xMin) == 0 && Float.compare(key[8], xMax) == 0
+                && Float.compare(key[9], yMin) == 0 && Float.compare(key[10], yMax) == 0;
+    }
+
+    /**
+     * @return the pixels per data unit on the x-axis of the last projection
+     */
+
+    public float scaleX() {
+        float range = key[8] - key[7];
+        return range > 0 ? key[5] / range : 0f;
+    }
+
+    /**
+     * @return the pixels per data unit on the y-axis of the last projection
+     */
+
+    public float scaleY() {
+        float range = key[10] - key[9];
+        return range > 0 ? key[6] / range : 0f;
+    }
+
+    /**
+     * Forces every point to be projected on the next call.
+     */
+
+    public void invalidate() {
+        Arrays.fill(key, Float.NaN);
+    }
+
+    /**
+     * @return the interleaved screen coordinates (x0, y0, x1, y1, ...) of the projected points
+     */
+
+    public float[] vertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the number of projected points
+     */
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,115 @@
+package uiax.components.chart;
+
+import uia.core.rendering.geometry.Geometry;
+import uia.core.rendering.Graphics;
+
+import java.util.Arrays;
+
+/**
+ * ShapeBatcher submits many screen-space primitives to a {@link Graphics} with a few
+ * {@link Graphics#drawShape} calls.
+ * <br>
+ * Since a shape is always closed and filled, batches are built so that their filled area is only the
+ * intended one:
+ * <ul>
+ *     <li>a polyline is submitted forward and then backward, so that it encloses no area;</li>
+ *     <li>markers are chained through their first vertex and the chain is walked back at the end,
+ *     so that the connections between markers enclose no area.</li>
+ * </ul>
+ * Each batch holds at most {@link #MAX_BATCH_VERTICES} vertices; consecutive polyline batches share
+ * one vertex to keep the line connected.
+ */
+
+final class ShapeBatcher {
+    public static final int MAX_BATCH_VERTICES = 2048;
+
+    private float[] batch = new float[2 * MAX_BATCH_VERTICES];
+
+    /**
+     * Draws an open polyline.
+     *
+     * @param graphics the {@link Graphics} used to draw the polyline
+     * @param vertices the interleaved screen coordinates (x0, y0, x1, y1, ...) of the polyline
+     * @param count    the number of vertices to draw
+     * @return the number of draw calls
+     */
+
+    public int drawPolyline(Graphics graphics, float[] vertices, int count) {
+        if (count < 2) {
+            return 0;
+        }
+
+        int drawCalls = 0;
+        int maxSegmentVertices = MAX_BATCH_VERTICES / 2;
+        int start = 0;
+        while (start < count - 1) {
+            int end = Math.min(count, start + maxSegmentVertices);
+            int length = end - start;
+
+            // forward
+            System.arraycopy(vertices, 2 * start, batch, 0, 2 * length);
+            // backward, without repeating the extremes
+            int k = 2 * length;
+            for (int i = end - 2; i > start; i--) {
+                batch[k++] = vertices[2 * i];
+                batch[k++] = vertices[2 * i + 1];
+            }
+
+            graphics.drawShape(null, k / 2, batch);
+            drawCalls++;
+            start = end - 1;
+        }
+        return drawCalls;
+    }
+
+    /**
+     * Draws a filled marker centered on each given position.
+     *
+     * @param graphics  the {@link Graphics} used to draw the markers
+     * @param positions the interleaved screen coordinates (x0, y0, x1, y1, ...) of the markers
+     * @param count     the number of markers to draw
+     * @param marker    the marker {@link Geometry}
+     * @param size      the marker size
+     * @return the number of draw calls
+     */
+
+    public int drawMarkers(Graphics graphics, float[] positions, int count, Geometry marker, float size) {
+        int markerVertices = marker.vertices();
+        if (count < 1 || markerVertices < 1) {
+            return 0;
+        }
+
+        // each marker needs its vertices, the closing vertex and the way back
+        int verticesPerMarker = markerVertices + 2;
+        int markersPerBatch = Math.max(1, MAX_BATCH_VERTICES / verticesPerMarker);
+        if (batch.length < 2 * markersPerBatch * verticesPerMarker) {
+            batch = Arrays.copyOf(batch, 2 * markersPerBatch * verticesPerMarker);
+        }
+        float[] geometry = marker.toArray();
+
+        int drawCalls = 0;
+        for (int start = 0; start < count; start += markersPerBatch) {
+            int end = Math.min(count, start + markersPerBatch);
+            int k = 0;
+            for (int i = start; i < end; i++) {
+                float x = positions[2 * i];
+                float y = positions[2 * i + 1];
+                for (int j = 0; j < markerVertices; j++) {
+                    batch[k++] = x + size * geometry[2 * j];
+                    batch[k++] = y + size * geometry[2 * j + 1];
+                }
+                batch[k++] = x + size * geometry[0];
+                batch[k++] = y + size * geometry[1];
+            }
+            // walks back to the first marker
+            for (int i = end - 2; i >= start; i--) {
+                batch[k++] = positions[2 * i] + size * geometry[0];
+                batch[k++] = positions[2 * i + 1] + size * geometry[1];
+            }
+
+            graphics.drawShape(null, k / 2, batch);
+            drawCalls++;
+        }
+        return drawCalls;
+    }
+}
@@ -6,12 +6,17 @@ import uia.core.rendering.color.ColorCollection;
 import uia.application.ui.component.WrapperView;
 import uia.core.rendering.geometry.Geometry;
 import uia.core.rendering.color.Color;
+import uia.core.rendering.image.Image;
 import uia.core.rendering.Transform;
 import uia.core.rendering.Graphics;
+import uia.core.ui.callbacks.OnMouseHover;
+import uia.core.ui.callbacks.OnMouseExit;
+import uia.core.ui.primitives.ScreenTouch;
 import uia.utility.MathUtility;
 import uia.core.ui.View;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.List;
 
@@ -20,15 +25,24 @@ import java.util.List;
  * By design, it provides a Cartesian plane on which to render the data distributions.
  * In addition, it adjusts the scale of the Cartesian plane to fit all the distribution points.
  * <br>
- * Limitations:
- * <br>
- * 1) it doesn't support zooming in or out;
- * 2) the distribution points are not interactive: this means that nothing happens when the user passes over one of them.
+ * Moreover, XChart supports zooming in and out with the mouse wheel and panning by dragging. Zooming and panning
+ * act on the x-axis, while the y-axis fits the visible points.
  * <br>
  * Usage notes:
  * <br>
  * 1) to set a new distribution or to manipulate a distribution, use the method: {@link #getDistribution(int)};
- * 2) it is possible to customise the graphical appearance of a distribution using the dedicated methods.
+ * 2) it is possible to customise the graphical appearance of a distribution using the dedicated methods;
+ * 3) when the mouse hovers over a point, {@link OnPointHovered} is notified with the nearest point;
+ * 4) XChart is not thread-safe: other threads can add points through an {@link IngestionQueue}
+ * (see {@link DrawableDistribution#setIngestionQueue(IngestionQueue)}), drained at the start of each update;
+ * 5) with the layer cache enabled (see {@link #enableLayerCache(boolean)}) and an {@link ImageBackend} set,
+ * axes and plotted points are retained in an offscreen image and only the appended points are drawn;
+ * 6) by default, each distribution fits its own points; with the shared scale enabled
+ * (see {@link #enableSharedScale(boolean)}), all distributions are drawn on the same axis range;
+ * 7) once the buffers have grown to the data size, appending points and drawing the chart allocate no objects,
+ * except for the offscreen graphics of the layer cache. Use {@link PointDistribution#getX(int)} and
+ * {@link PointDistribution#getY(int)} to read points in loops;
+ * 8) to show many small trends at once (e.g. one for each row of a list), use the lighter {@link XSparkline}.
  */
 
 public class XChart extends WrapperView {
@@ -39,6 +53,39 @@ public class XChart extends WrapperView {
     private final Transform axisTransform;
     private final Geometry axisGeometry;
 
+    private static final float ZOOM_FACTOR = 1.1f;
+    private static final float MIN_VIEW_SIZE = 1e-6f;
+
+    private final float[] nearestPosition = {0f, 0f};
+    private float hoverDistance = 16f;
+
+    private float viewStart = 0f;
+    private float viewEnd = 1f;
+    private boolean enableZoom = true;
+    private boolean dragging = false;
+    private float lastDragX;
+    private final float[] visibleRange = new float[4];
+    private float viewXMin;
+    private float viewXMax;
+    private float viewYMin;
+    private float viewYMax;
+
+    private boolean sharedScale = false;
+    private long[] rangeVersions = new long[0];
+    private int rangeDistributions = -1;
+
+    private static final int LAYER_KEY_LENGTH = 13;
+    private static final int MAX_APPENDED_POINTS = 1024;
+
+    private boolean enableLayerCache = false;
+    private ImageBackend imageBackend;
+    private final Image layer = new Image();
+    private final float[] layerKey = new float[LAYER_KEY_LENGTH];
+    private long layerStyle;
+    private int layerDistributions;
+    private Color layerAxisColor;
+    private boolean layerSharedScale;
+
     private float xMax;
     private float yMax;
     private float xMin;
@@ -58,50 +105,265 @@ public class XChart extends WrapperView {
         axisColor = ColorCollection.BLACK;
 
         reset();
+        invalidateLayer();
+
+        registerCallback((OnMouseHover) touches -> {
+            ScreenTouch touch = touches[0];
+            ScreenTouch.Action action = touch.getAction();
+            if (enableZoom && action.equals(ScreenTouch.Action.WHEEL)) {
+                zoom(touch.getX(), touch.getWheelRotation());
+            } else if (enableZoom && action.equals(ScreenTouch.Action.DRAGGED)) {
+                if (dragging) {
+                    pan(touch.getX() - lastDragX);
+                }
+                dragging = true;
+                lastDragX = touch.getX();
+            } else {
+                dragging = false;
+                ChartPoint point = nearest(touch.getX(), touch.getY());
+                if (point != null) {
+                    notifyCallbacks(OnPointHovered.class, point);
+                }
+            }
+        });
+        registerCallback((OnMouseExit) touches -> dragging = false);
+    }
+
+    /**
+     * Helper function. Zooms the visible window around the given position.
+     *
+     * @param x             the position <b>(relative to this View)</b> along x-axis
+     * @param wheelRotation the mouse wheel rotation: negative values zoom in, positive values zoom out
+     */
+
+    private void zoom(float x, int wheelRotation) {
+        float width = 0.95f * getWidth();
+        float anchor = MathUtility.constrain((x - 0.5f * (getWidth() - width)) / width, 0f, 1f);
+        float viewSize = viewEnd - viewStart;
+        float position = viewStart + anchor * viewSize;
+        float newViewSize = viewSize * (float) Math.pow(ZOOM_FACTOR, wheelRotation);
+        setZoom(position - anchor * newViewSize, position + (1f - anchor) * newViewSize);
+    }
+
+    /**
+     * Helper function. Moves the visible window of the given amount of pixels.
+     */
+
+    private void pan(float dx) {
+        float width = 0.95f * getWidth();
+        float viewSize = viewEnd - viewStart;
+        float shift = -dx / width * viewSize;
+        shift = MathUtility.constrain(shift, -viewStart, 1f - viewEnd);
+        setZoom(viewStart + shift, viewEnd + shift);
+    }
+
+    /**
+     * Sets the visible window on the x-axis, expressed as a fraction of the x-axis range.
+     * <br>
+     * {@code setZoom(0, 1)} shows all the points.
+     *
+     * @param start the start of the window between [0, 1]
+     * @param end   the end of the window between [0, 1]
+     */
+
+    public void setZoom(float start, float end) {
+        start = MathUtility.constrain(start, 0f, 1f);
+        end = MathUtility.constrain(end, 0f, 1f);
+        if (end - start < MIN_VIEW_SIZE) {
+            float middle = MathUtility.constrain(0.5f * (start + end), 0.5f * MIN_VIEW_SIZE, 1f - 0.5f * MIN_VIEW_SIZE);
+            start = middle - 0.5f * MIN_VIEW_SIZE;
+            end = middle + 0.5f * MIN_VIEW_SIZE;
+        }
+        viewStart = start;
+        viewEnd = end;
+    }
+
+    /**
+     * @return the visible window on the x-axis as an array of two elements: start and end between [0, 1]
+     */
+
+    public float[] getZoom() {
+        return new float[]{viewStart, viewEnd};
+    }
+
+    /**
+     * Enables or disables zooming and panning.
+     *
+     * @param enableZoom true to enable zooming and panning
+     */
+
+    public void enableZoom(boolean enableZoom) {
+        this.enableZoom = enableZoom;
+        dragging = false;
     }
 
-    /*
-     * Calculates, for each distribution, the nearest point to the mouse position.
+    /**
+     * Enables or disables the shared scale.
+     * <br>
+     * By default, each distribution is scaled to fit its own points, so distributions with different ranges
+     * overlap. With the shared scale, all distributions are projected with the same axis range: the range of
+     * all points on the x-axis and, on the y-axis, the range of the points inside the visible window.
+     *
+     * @param sharedScale true to draw all distributions on the same scale
+     */
+
+    public void enableSharedScale(boolean sharedScale) {
+        this.sharedScale = sharedScale;
+        invalidateLayer();
+    }
+
+    /**
+     * Enables or disables the layer cache.
      * <br>
-     * Time required: T(n)
+     * When enabled, axes and plotted points are rendered once into an offscreen image that is drawn every frame.
+     * Points appended since the previous frame are drawn on top of the image; any other change (bounds, rotation,
+     * dimension, axis range, visible window, distribution style or edits) renders the image again.
      * <br>
-     * Space required: O(n)
+     * The layer cache requires an {@link ImageBackend} (see {@link #setImageBackend(ImageBackend)}), e.g.
+     * {@link uiax.components.chart.awt.AWTImageBackend} on Swing. Without one, enabling the layer cache has no
+     * effect: the chart falls back to drawing axes and all the points every frame.
      *
-     * @param x     the mouse position <b>(relative to this View)</b> along x-axis
-     * @param store a not null {@link List} used to store the nearest points
+     * @param enableLayerCache true to enable the layer cache
+     */
+
+    public void enableLayerCache(boolean enableLayerCache) {
+        this.enableLayerCache = enableLayerCache;
+        invalidateLayer();
+    }
+
+    /**
+     * Sets the {@link ImageBackend} used to create the layer cache image.
+     * By default, there is no backend and the layer cache is not used (see {@link #enableLayerCache(boolean)}).
      *
+     * @param imageBackend a not null {@link ImageBackend}
+     * @throws NullPointerException if {@code imageBackend == null}
+     */
 
-    @Deprecated
-    public void nearest(float x, List<float[]> store) {
-        store.clear();
+    public void setImageBackend(ImageBackend imageBackend) {
+        this.imageBackend = Objects.requireNonNull(imageBackend);
+        invalidateLayer();
+    }
 
-        int node;
-        int pDist;
-        float[] bounds = getBounds();
-        float offset = bounds[0] - bounds[2] / 2f;
-
-        for (DrawableDistribution distribution : drawableDistributions) {
-            node = -1;
-            pDist = Integer.MAX_VALUE;
-            for (int j = 0; j < distribution.size(); j++) {
-                int dist = (int) Math.abs(bounds[0] + bounds[2] * distribution.get(j, PointDistribution.AXIS.X) - (x + offset));
-                if (dist < pDist) {
-                    node = j;
-                    pDist = dist;
+    /**
+     * Helper function. Forces the layer cache to be rendered again on the next draw.
+     */
+
+    private void invalidateLayer() {
+        Arrays.fill(layerKey, Float.NaN);
+    }
+
+    /**
+     * Helper function. Updates an entry of the layer key.
+     *
+     * @return true if the entry has changed
+     */
+
+    private boolean updateLayerKey(int i, float value) {
+        if (Float.compare(layerKey[i], value) != 0) {
+            layerKey[i] = value;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Helper function. Draws the chart through the layer cache.
+     */
+
+    private void drawLayer(Graphics graphics, float[] bounds, float width, float height, float rotation) {
+        long style = 0;
+        for (int i = 0; i < drawableDistributions.size(); i++) {
+            DrawableDistribution distribution = drawableDistributions.get(i);
+            style += distribution.styleVersion;
+        }
+        // non-short-circuit: every entry must be updated
+        boolean changed = updateLayerKey(0, bounds[0]) | updateLayerKey(1, bounds[1])
+                | updateLayerKey(2, bounds[2]) | updateLayerKey(3, bounds[3]) | updateLayerKey(4, rotation)
+                | updateLayerKey(5, width) | updateLayerKey(6, height)
+                | updateLayerKey(7, viewStart) | updateLayerKey(8, viewEnd)
+                | updateLayerKey(9, xMin) | updateLayerKey(10, xMax)
+                | updateLayerKey(11, viewYMin) | updateLayerKey(12, viewYMax);
+        changed |= style != layerStyle || layerDistributions != drawableDistributions.size()
+                || layerAxisColor != axisColor || layerSharedScale != sharedScale;
+        layerStyle = style;
+        layerSharedScale = sharedScale;
+        layerDistributions = drawableDistributions.size();
+        layerAxisColor = axisColor;
+
+        boolean appended = false;
+        for (int i = 0; i < drawableDistributions.size() && !changed; i++) {
+            DrawableDistribution distribution = drawableDistributions.get(i);
+            changed = !distribution.canDrawAppended(rangeOf(distribution), MAX_APPENDED_POINTS);
+            appended |= distribution.hasAppended();
+        }
+
+        int layerWidth = Math.max(1, (int) Math.ceil(bounds[2]));
+        int layerHeight = Math.max(1, (int) Math.ceil(bounds[3]));
+        if (changed || appended) {
+            Graphics layerGraphics = imageBackend.createGraphics(layer, layerWidth, layerHeight,
+                    bounds[0], bounds[1], changed);
+            if (changed) {
+                drawAxis(layerGraphics, width, height, rotation);
+                drawDistributions(layerGraphics, bounds, width, height, rotation);
+            } else {
+                for (int i = 0; i < drawableDistributions.size(); i++) {
+                    DrawableDistribution distribution = drawableDistributions.get(i);
+                    distribution.drawAppended(layerGraphics);
                 }
             }
+            layerGraphics.dispose();
+        }
 
-            // save data
-            if (node == -1) {
-                store.add(new float[0]);
-            } else {
-                store.add(new float[]{
-                        distribution.get(node, PointDistribution.AXIS.X),
-                        distribution.get(node, PointDistribution.AXIS.Y)
-                });
+        graphics.drawImage(layer,
+                bounds[0] + 0.5f * layerWidth, bounds[1] + 0.5f * layerHeight,
+                layerWidth, layerHeight, 0f);
+    }
+
+    /**
+     * Finds the nearest point to the given position among all distributions.
+     * <br>
+     * Each distribution answers with an index (see {@link DrawableDistribution#nearest(float, float, float)}),
+     * so points are not scanned one by one.
+     *
+     * @param x the position <b>(relative to this View)</b> along x-axis
+     * @param y the position <b>(relative to this View)</b> along y-axis
+     * @return the nearest {@link ChartPoint} within the hover distance or null
+     */
+
+    public ChartPoint nearest(float x, float y) {
+        float[] bounds = getBounds();
+        float screenX = bounds[0] + x;
+        float screenY = bounds[1] + y;
+
+        ChartPoint result = null;
+        float bestDistance = Float.MAX_VALUE;
+        for (int i = 0; i < drawableDistributions.size(); i++) {
+            DrawableDistribution distribution = drawableDistributions.get(i);
+            int index = distribution.nearest(screenX, screenY, hoverDistance);
+            if (index != -1) {
+                float[] position = distribution.getScreenPosition(index, nearestPosition);
+                float dx = position[0] - screenX;
+                float dy = position[1] - screenY;
+                float distance = dx * dx + dy * dy;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    result = new ChartPoint(distribution, index,
+                            distribution.getX(index), distribution.getY(index));
+                }
             }
         }
-    }*/
+        return result;
+    }
+
+    /**
+     * Sets the maximum distance between the mouse and a point for the point to be hovered.
+     *
+     * @param hoverDistance the distance, in pixels, greater than or equal to zero
+     */
+
+    public void setHoverDistance(float hoverDistance) {
+        this.hoverDistance = Math.max(0f, hoverDistance);
+    }
 
     /**
      * Update the attributes of this graphic
@@ -126,6 +388,47 @@ public class XChart extends WrapperView {
         xMin = yMin = Integer.MAX_VALUE;
     }
 
+    /**
+     * Helper function. Updates the range of all points from the cached extremes of the distributions.
+     * The range is recalculated only when a distribution has changed since the last frame, and it shrinks
+     * when points are removed or evicted.
+     * <br>
+     * Time required: O(d), where d is the number of distributions
+     */
+
+    private void updateRange() {
+        int distributions = drawableDistributions.size();
+        boolean changed = distributions != rangeDistributions;
+        if (rangeVersions.length < distributions) {
+            rangeVersions = Arrays.copyOf(rangeVersions, Math.max(distributions, 2 * rangeVersions.length));
+        }
+        for (int i = 0; i < distributions; i++) {
+            long version = drawableDistributions.get(i).version();
+            if (rangeVersions[i] != version) {
+                rangeVersions[i] = version;
+                changed = true;
+            }
+        }
+        rangeDistributions = distributions;
+
+        if (changed) {
+            reset();
+            for (int i = 0; i < distributions; i++) {
+                DrawableDistribution distribution = drawableDistributions.get(i);
+                if (distribution.size() > 0) {
+                    updateMinAndMax(
+                            distribution.getMax(PointDistribution.AXIS.X),
+                            distribution.getMax(PointDistribution.AXIS.Y)
+                    );
+                    updateMinAndMax(
+                            distribution.getMin(PointDistribution.AXIS.X),
+                            distribution.getMin(PointDistribution.AXIS.Y)
+                    );
+                }
+            }
+        }
+    }
+
     /**
      * Clears all the distributions
      */
@@ -133,6 +436,7 @@ public class XChart extends WrapperView {
     public void clear() {
         reset();
         drawableDistributions.clear();
+        rangeDistributions = -1;
     }
 
     /**
@@ -147,22 +451,86 @@ public class XChart extends WrapperView {
         this.axisColor = color;
     }
 
+    /**
+     * Helper function. Fits the y-axis to the points inside the visible window.
+     * <br>
+     * Time required: O(d * log(n)) for points sorted on the x-axis, where d is the number of distributions
+     */
+
+    private void updateVisibleRange() {
+        boolean window = viewStart > 0f || viewEnd < 1f;
+        viewXMin = window ? xMin + viewStart * (xMax - xMin) : xMin;
+        viewXMax = window ? xMin + viewEnd * (xMax - xMin) : xMax;
+        viewYMin = yMin;
+        viewYMax = yMax;
+        if (window) {
+            viewYMin = Float.POSITIVE_INFINITY;
+            viewYMax = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < drawableDistributions.size(); i++) {
+                DrawableDistribution distribution = drawableDistributions.get(i);
+                boolean visible;
+                if (sharedScale) {
+                    visibleRange[0] = viewXMin;
+                    visibleRange[1] = viewXMax;
+                    visible = distribution.fitRange(visibleRange, true);
+                } else {
+                    distribution.getVisibleRange(viewStart, viewEnd, visibleRange);
+                    visible = true;
+                }
+                if (visible && visibleRange[2] < viewYMin) viewYMin = visibleRange[2];
+                if (visible && visibleRange[3] > viewYMax) viewYMax = visibleRange[3];
+            }
+            // no visible point
+            if (viewYMin > viewYMax) {
+                viewYMin = yMin;
+                viewYMax = yMax;
+            }
+        }
+    }
+
+    /**
+     * Helper function. Returns the axis range that the given distribution is drawn with.
+     *
+     * @return the shared range or the visible range of the distribution (xMin, xMax, yMin and yMax)
+     */
+
+    private float[] rangeOf(DrawableDistribution distribution) {
+        if (sharedScale) {
+            visibleRange[0] = viewXMin;
+            visibleRange[1] = viewXMax;
+            visibleRange[2] = viewYMin;
+            visibleRange[3] = viewYMax;
+            return visibleRange;
+        }
+        return distribution.getVisibleRange(viewStart, viewEnd, visibleRange);
+    }
+
+    /**
+     * Helper function. Draws the distributions, on the same scale when the shared scale is enabled.
+     */
+
+    private void drawDistributions(Graphics graphics, float[] bounds, float width, float height, float rotation) {
+        for (int i = 0; i < drawableDistributions.size(); i++) {
+            DrawableDistribution distribution = drawableDistributions.get(i);
+            if (sharedScale) {
+                distribution.draw(graphics, bounds, width, height, rotation, viewXMin, viewXMax, viewYMin, viewYMax);
+            } else {
+                distribution.draw(graphics, bounds, width, height, rotation, viewStart, viewEnd);
+            }
+        }
+    }
+
     /**
      * Helper function. Draws axis on the given Graphics.
      */
 
     private void drawAxis(Graphics graphics, float width, float height, float rotation) {
         float[] bounds = getBounds();
-        float xDist = width * (MathUtility.normalize(0f, xMin, xMax) - 0.5f);
-        float yDist = -height * (MathUtility.normalize(0f, yMin, yMax) - 0.5f);
+        float xDist = width * (MathUtility.normalize(0f, viewXMin, viewXMax) - 0.5f);
+        float yDist = -height * (MathUtility.normalize(0f, viewYMin, viewYMax) - 0.5f);
         float lineX = ComponentUtility.getPositionOnX(bounds[0], bounds[2], xDist, yDist, rotation);
         float lineY = ComponentUtility.getPositionOnY(bounds[1], bounds[3], xDist, yDist, rotation);
 
-        // clips region
-        ComponentUtility.makeTransformForClipRegion(this, 0.97f, 0.97f, clipTransform);
-        Geometry geometry = getGeometry();
-        graphics.setClip(clipTransform, geometry.vertices(), geometry.toArray());
-
         // draws ordinate
         axisTransform
                 .setTranslation(lineX, lineY)
@@ -179,8 +547,15 @@ public class XChart extends WrapperView {
                 .setScale(2 * width, 1)
                 .setRotation(0f);
         graphics.drawShape(axisTransform, axisGeometry.vertices(), axisGeometry.toArray());
+    }
 
-        graphics.restoreClip();
+    @Override
+    public void update(View parent) {
+        // drains the queues even when the chart is hidden and not drawn
+        for (int i = 0; i < drawableDistributions.size(); i++) {
+            drawableDistributions.get(i).drainIngestionQueue();
+        }
+        super.update(parent);
     }
 
     @Override
@@ -193,19 +568,22 @@ public class XChart extends WrapperView {
             float height = 0.95f * getHeight();
             float rot = bounds[4];
 
-            drawAxis(graphics, width, height, rot);
-
-            for (DrawableDistribution distribution : drawableDistributions) {
-                updateMinAndMax(
-                        distribution.getMax(PointDistribution.AXIS.X),
-                        distribution.getMax(PointDistribution.AXIS.Y)
-                );
-                updateMinAndMax(
-                        distribution.getMin(PointDistribution.AXIS.X),
-                        distribution.getMin(PointDistribution.AXIS.Y)
-                );
-                distribution.draw(graphics, bounds, width, height, rot);
+            // clips region
+            ComponentUtility.makeTransformForClipRegion(this, 0.97f, 0.97f, clipTransform);
+            Geometry geometry = getGeometry();
+            graphics.setClip(clipTransform, geometry.vertices(), geometry.toArray());
+
+            updateRange();
+            updateVisibleRange();
+
+            if (enableLayerCache && imageBackend != null) {
+                drawLayer(graphics, bounds, width, height, rot);
+            } else {
+                drawAxis(graphics, width, height, rot);
+                drawDistributions(graphics, bounds, width, height, rot);
             }
+
+            graphics.restoreClip();
         }
     }
 
@@ -234,4 +612,19 @@ public class XChart extends WrapperView {
         }
         return null;
     }
+
+    /**
+     * Adds the given distribution to this chart. Use it to plot a distribution backed by a custom
+     * {@link PointStorage}, e.g. a {@link RingStorage}, a {@link ReservoirStorage} or a {@link MappedStorage}.
+     *
+     * @param distribution a not null {@link DrawableDistribution}
+     * @return the index of the added distribution
+     * @throws NullPointerException if {@code distribution == null}
+     */
+
+    public int addDistribution(DrawableDistribution distribution) {
+        Objects.requireNonNull(distribution);
+        drawableDistributions.add(distribution);
+        return drawableDistributions.size() - 1;
+    }
 }
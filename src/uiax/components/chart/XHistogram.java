@@ -0,0 +1,136 @@
+package uiax.components.chart;
+
+import uia.application.ui.component.utility.ComponentUtility;
+import uia.core.rendering.color.ColorCollection;
+import uia.application.ui.component.WrapperView;
+import uia.core.rendering.geometry.Geometry;
+import uia.core.rendering.color.Color;
+import uia.core.rendering.Transform;
+import uia.core.rendering.Graphics;
+import uia.core.ui.View;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The purpose of this component is to render a {@link Histogram} as a bar chart.
+ * <br>
+ * Only the bins are rendered, one bar for each bin, so the draw cost depends on the number of bins and not on the
+ * number of values counted by the histogram. Bars are scaled so that the highest one fills the component.
+ * <br>
+ * Adjacent bars are submitted as a single shape, the outline of their tops, so a histogram is drawn with about
+ * one call for every thousand bins.
+ *
+ * @apiNote Designed to support rotation
+ */
+
+public class XHistogram extends WrapperView {
+    private static final int BINS_PER_SHAPE = ShapeBatcher.MAX_BATCH_VERTICES / 2 - 2;
+
+    private Histogram histogram;
+    private Color barColor;
+    private final Transform clipTransform;
+    private final Transform barTransform;
+    private float[] vertices = new float[64];
+
+    public XHistogram(View view, Histogram histogram) {
+        super(view);
+
+        this.histogram = Objects.requireNonNull(histogram);
+
+        clipTransform = new Transform();
+
+        barTransform = new Transform();
+
+        barColor = ColorCollection.ROYAL_BLUE;
+    }
+
+    /**
+     * Sets the histogram to render.
+     *
+     * @param histogram a not null {@link Histogram}
+     * @throws NullPointerException if {@code histogram == null}
+     */
+
+    public void setHistogram(Histogram histogram) {
+        this.histogram = Objects.requireNonNull(histogram);
+    }
+
+    /**
+     * @return the rendered {@link Histogram}
+     */
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Sets the bar color.
+     *
+     * @param color the bar color
+     * @throws NullPointerException if {@code color == null}
+     */
+
+    public void setBarColor(Color color) {
+        Objects.requireNonNull(color);
+        this.barColor = color;
+    }
+
+    /**
+     * Helper function. Draws the bars between [from, to) as a single shape: from the bottom left corner,
+     * along the top of each bar, to the bottom right corner.
+     */
+
+    private void drawBars(Graphics graphics, int from, int to, long maxCount) {
+        int bins = histogram.bins();
+        int length = 2 * (to - from) + 2;
+        if (vertices.length < 2 * length) {
+            vertices = Arrays.copyOf(vertices, 2 * length);
+        }
+
+        int k = 0;
+        vertices[k++] = (float) from / bins - 0.5f;
+        vertices[k++] = 0.5f;
+        for (int bin = from; bin < to; bin++) {
+            float top = 0.5f - (float) ((double) histogram.getCount(bin) / maxCount);
+            vertices[k++] = (float) bin / bins - 0.5f;
+            vertices[k++] = top;
+            vertices[k++] = (float) (bin + 1) / bins - 0.5f;
+            vertices[k++] = top;
+        }
+        vertices[k++] = (float) to / bins - 0.5f;
+        vertices[k] = 0.5f;
+
+        graphics.drawShape(barTransform, length, vertices);
+    }
+
+    @Override
+    public void draw(Graphics graphics) {
+        super.draw(graphics);
+
+        long maxCount = histogram.getMaxCount();
+        if (isVisible() && maxCount > 0) {
+            float[] bounds = getBounds();
+
+            // clips region
+            ComponentUtility.makeTransformForClipRegion(this, 0.97f, 0.97f, clipTransform);
+            Geometry geometry = getGeometry();
+            graphics.setClip(clipTransform, geometry.vertices(), geometry.toArray());
+
+            barTransform
+                    .setTranslation(bounds[0] + 0.5f * bounds[2], bounds[1] + 0.5f * bounds[3])
+                    .setScale(0.95f * getWidth(), 0.95f * getHeight())
+                    .setRotation(bounds[4]);
+            graphics
+                    .setShapeColor(barColor)
+                    .setShapeBorderWidth(0);
+
+            int bins = histogram.bins();
+            for (int from = 0; from < bins; from += BINS_PER_SHAPE) {
+                drawBars(graphics, from, Math.min(bins, from + BINS_PER_SHAPE), maxCount);
+            }
+
+            graphics.restoreClip();
+        }
+    }
+}
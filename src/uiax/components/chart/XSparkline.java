@@ -0,0 +1,297 @@
+package uiax.components.chart;
+
+import uia.application.ui.component.utility.ComponentUtility;
+import uia.application.ui.component.WrapperView;
+import uia.core.rendering.color.ColorCollection;
+import uia.core.rendering.color.Color;
+import uia.core.rendering.Graphics;
+import uia.core.ui.View;
+
+import java.util.Objects;
+
+/**
+ * XSparkline is a lightweight line chart meant to be repeated many times, e.g. a trend in every row of a list.
+ * <br>
+ * Unlike {@link XChart}, it has no axes, no clip region, no zoom and no distribution: values are held in a
+ * primitive ring buffer of fixed capacity and plotted at evenly spaced positions, from the oldest on the left
+ * to the most recent on the right edge. On the y-axis, the line fits the buffered values unless a fixed range
+ * is set (see {@link #setRange(float, float)}).
+ * <br>
+ * The screen position of the line is computed only when the values, the range or the component bounds change,
+ * with a projection precalculated from the bounds. Otherwise, drawing the sparkline is a single
+ * {@link Graphics#drawShape} call on the cached vertices.
+ * <br>
+ * Space required: about 20 bytes for each value of capacity besides the wrapped View, e.g. less than 1 KB
+ * for 40 values.
+ *
+ * @apiNote Designed to support rotation
+ */
+
+public final class XSparkline extends WrapperView {
+    /**
+     * The maximum capacity, so that the line is always submitted with one draw call.
+     */
+    public static final int MAX_CAPACITY = ShapeBatcher.MAX_BATCH_VERTICES / 2;
+
+    private final float[] values;
+    private int head;
+    private int size;
+
+    private boolean autoRange = true;
+    private boolean rangeChanged;
+    private float min;
+    private float max;
+
+    // the line is submitted forward and then backward, so that it encloses no area (see ShapeBatcher)
+    private final float[] vertices;
+    private int vertexCount;
+    private boolean verticesValid;
+    private float boundsX;
+    private float boundsY;
+    private float boundsWidth;
+    private float boundsHeight;
+    private float rotation;
+
+    private Color lineColor = ColorCollection.BLACK;
+    private float lineWidth = 1f;
+
+    /**
+     * Creates a new XSparkline.
+     *
+     * @param view     a not null {@link View}
+     * @param capacity the maximum amount of values, between [2, {@link #MAX_CAPACITY}]
+     * @throws NullPointerException     if {@code view == null}
+     * @throws IllegalArgumentException if {@code capacity < 2 || capacity > MAX_CAPACITY}
+     */
+
+    public XSparkline(View view, int capacity) {
+        super(Objects.requireNonNull(view));
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity can not be < 2");
+        }
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity can not be > " + MAX_CAPACITY);
+        }
+        values = new float[capacity];
+        vertices = new float[2 * (2 * capacity - 2)];
+        resetRange();
+    }
+
+    /**
+     * Helper function. Resets the automatic range to the one of an empty sparkline.
+     */
+
+    private void resetRange() {
+        if (autoRange) {
+            min = Float.POSITIVE_INFINITY;
+            max = Float.NEGATIVE_INFINITY;
+            rangeChanged = false;
+        }
+    }
+
+    /**
+     * Appends a value. When the sparkline is full, the oldest value is removed.
+     * <br>
+     * Time required: O(1)
+     *
+     * @param value a finite value
+     * @throws IllegalArgumentException if {@code value} is NaN or infinite
+     */
+
+    public void add(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            throw new IllegalArgumentException("value must be finite");
+        }
+        int capacity = values.length;
+        if (size == capacity) {
+            float evicted = values[head];
+            // an evicted extreme requires the range to be recalculated
+            if (autoRange && (evicted <= min || evicted >= max)) {
+                rangeChanged = true;
+            }
+            values[head] = value;
+            head = head + 1 == capacity ? 0 : head + 1;
+        } else {
+            int slot = head + size;
+            values[slot >= capacity ? slot - capacity : slot] = value;
+            size++;
+        }
+        if (autoRange) {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        verticesValid = false;
+    }
+
+    /**
+     * Removes all values.
+     */
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        resetRange();
+        verticesValid = false;
+    }
+
+    /**
+     * @param i the index of the value between [0, size()), from the oldest to the most recent
+     * @return the specified value
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >= size()}
+     */
+
+    public float get(int i) {
+        PointStorage.checkIndex(i, size);
+        int slot = head + i;
+        return values[slot >= values.length ? slot - values.length : slot];
+    }
+
+    /**
+     * @return the amount of values
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum amount of values
+     */
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Sets a fixed range on the y-axis and disables the automatic range.
+     *
+     * @param min the value on the bottom edge
+     * @param max the value on the top edge, greater than min
+     */
+
+    public void setRange(float min, float max) {
+        if (min < max) {
+            autoRange = false;
+            this.min = min;
+            this.max = max;
+            verticesValid = false;
+        }
+    }
+
+    /**
+     * Enables the automatic range: the line fits the values on the y-axis. It is enabled by default.
+     */
+
+    public void enableAutoRange() {
+        autoRange = true;
+        rangeChanged = true;
+        verticesValid = false;
+    }
+
+    /**
+     * Sets the line color.
+     *
+     * @param color a not null {@link Color}
+     * @throws NullPointerException if {@code color == null}
+     */
+
+    public void setLineColor(Color color) {
+        lineColor = Objects.requireNonNull(color);
+    }
+
+    /**
+     * Sets the line width.
+     *
+     * @param lineWidth the line width greater than or equal to zero
+     */
+
+    public void setLineWidth(float lineWidth) {
+        this.lineWidth = Math.max(0f, lineWidth);
+    }
+
+    /**
+     * Helper function. Recalculates the automatic range with a scan of the values.
+     * <br>
+     * Time required: T(capacity)
+     */
+
+    private void updateRange() {
+        min = Float.POSITIVE_INFINITY;
+        max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            float value = values[i];
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        rangeChanged = false;
+    }
+
+    /**
+     * Helper function. Projects the values on the screen, forward and then backward.
+     * <br>
+     * Time required: T(size)
+     */
+
+    private void updateVertices(float[] bounds, float width, float height) {
+        boundsX = bounds[0];
+        boundsY = bounds[1];
+        boundsWidth = bounds[2];
+        boundsHeight = bounds[3];
+        rotation = bounds[4];
+
+        // affine projection: origin plus the screen directions of the x-axis and the y-axis
+        float originX = ComponentUtility.getPositionOnX(boundsX, boundsWidth, 0f, 0f, rotation);
+        float originY = ComponentUtility.getPositionOnY(boundsY, boundsHeight, 0f, 0f, rotation);
+        float axisXX = ComponentUtility.getPositionOnX(boundsX, boundsWidth, 1f, 0f, rotation) - originX;
+        float axisXY = ComponentUtility.getPositionOnY(boundsY, boundsHeight, 1f, 0f, rotation) - originY;
+        float axisYX = ComponentUtility.getPositionOnX(boundsX, boundsWidth, 0f, 1f, rotation) - originX;
+        float axisYY = ComponentUtility.getPositionOnY(boundsY, boundsHeight, 0f, 1f, rotation) - originY;
+
+        int capacity = values.length;
+        float step = width / (capacity - 1);
+        float firstDist = 0.5f * width - (size - 1) * step;
+        float scale = max > min ? height / (max - min) : 0f;
+        float middle = max > min ? 0.5f * height : 0f;
+
+        for (int i = 0; i < size; i++) {
+            int slot = head + i;
+            float value = values[slot >= capacity ? slot - capacity : slot];
+            float xDist = firstDist + i * step;
+            float yDist = middle - (value - min) * scale;
+            vertices[2 * i] = originX + xDist * axisXX + yDist * axisYX;
+            vertices[2 * i + 1] = originY + xDist * axisXY + yDist * axisYY;
+        }
+        // backward, without repeating the extremes
+        int k = 2 * size;
+        for (int i = size - 2; i > 0; i--) {
+            vertices[k++] = vertices[2 * i];
+            vertices[k++] = vertices[2 * i + 1];
+        }
+        vertexCount = k / 2;
+        verticesValid = true;
+    }
+
+    @Override
+    public void draw(Graphics graphics) {
+        super.draw(graphics);
+
+        if (isVisible() && size > 1) {
+            float[] bounds = getBounds();
+            if (autoRange && rangeChanged) {
+                updateRange();
+                verticesValid = false;
+            }
+            if (!verticesValid
+                    || boundsX != bounds[0] || boundsY != bounds[1]
+                    || boundsWidth != bounds[2] || boundsHeight != bounds[3] || rotation != bounds[4]) {
+                updateVertices(bounds, getWidth(), getHeight());
+            }
+
+            graphics
+                    .setShapeBorderWidth(lineWidth)
+                    .setShapeBorderColor(lineColor)
+                    .setShapeColor(lineColor)
+                    .drawShape(null, vertexCount, vertices);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package uiax.components.chart.awt;
+
+import uiax.components.chart.ImageBackend;
+import adaptor.swing.graphics.GraphicsAWT;
+import uia.core.rendering.image.Image;
+import uia.core.rendering.Graphics;
+
+import java.awt.image.DataBufferInt;
+import java.awt.image.BufferedImage;
+import java.awt.RenderingHints;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.util.Objects;
+
+/**
+ * AWTImageBackend is the {@link ImageBackend} for the Swing platform: images are {@link BufferedImage}
+ * with ARGB pixels, written row by row without conversions, and offscreen layers are drawn with {@link GraphicsAWT}.
+ * <br>
+ * It lives in its own package, so the chart components don't depend on the Swing adaptor. Set it on the
+ * components that need images, e.g. {@code distribution.setImageBackend(new AWTImageBackend())}.
+ */
+
+public final class AWTImageBackend implements ImageBackend {
+
+    /**
+     * Helper function. Makes sure that the given image holds a {@link BufferedImage} of the specified dimension.
+     *
+     * @return the {@link BufferedImage} or null if it has been created
+     */
+
+    private static BufferedImage validate(Image image, int width, int height) {
+        Objects.requireNonNull(image);
+        Object nativeImage = image.getNative();
+        if (nativeImage instanceof BufferedImage
+                && ((BufferedImage) nativeImage).getWidth() == width
+                && ((BufferedImage) nativeImage).getHeight() == height) {
+            return (BufferedImage) nativeImage;
+        }
+        image.setNative(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), width, height);
+        return null;
+    }
+
+    @Override
+    public void writePixels(Image image, int width, int height, int[] pixels,
+                            int x, int y, int regionWidth, int regionHeight) {
+        if (validate(image, width, height) == null) {
+            x = 0;
+            y = 0;
+            regionWidth = width;
+            regionHeight = height;
+        }
+
+        BufferedImage bufferedImage = (BufferedImage) image.getNative();
+        int[] target = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+        for (int row = y; row < y + regionHeight; row++) {
+            System.arraycopy(pixels, row * width + x, target, row * width + x, regionWidth);
+        }
+    }
+
+    @Override
+    public Graphics createGraphics(Image image, int width, int height, float originX, float originY, boolean clear) {
+        validate(image, width, height);
+
+        Graphics2D graphics2D = ((BufferedImage) image.getNative()).createGraphics();
+        if (clear) {
+            graphics2D.setComposite(AlphaComposite.Clear);
+            graphics2D.fillRect(0, 0, width, height);
+            graphics2D.setComposite(AlphaComposite.SrcOver);
+        }
+        graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics2D.translate(-originX, -originY);
+        return new GraphicsAWT(() -> graphics2D);
+    }
+}
@@ -0,0 +1,142 @@
+package uiax.example;
+
+import uia.application.ui.component.WrapperView;
+import uia.application.ui.component.Component;
+import uiax.components.chart.DrawableDistribution;
+import uiax.components.chart.IngestionQueue;
+import uiax.components.chart.RingStorage;
+import uiax.components.chart.XChart;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Demonstrative check of the allocation-free live path of {@link XChart}. A chart of 8 sliding-window
+ * distributions is updated and drawn on a {@link CountingGraphics} while points are appended, both directly and
+ * through an {@link IngestionQueue}. After a warm-up, during which buffers grow to the data size, it measures the
+ * bytes allocated by the thread with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} and
+ * fails if any frame allocates.
+ */
+
+public class AllocationCheck {
+    private static final int DISTRIBUTIONS = 8;
+    private static final int WINDOW = 50_000;
+    private static final int POINTS_PER_FRAME = 20;
+    // sliding windows rebuild their structures a few times before their buffers stop growing
+    private static final int WARM_UP_FRAMES = 12_000;
+    private static final int FRAMES = 1_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final Screen screen = new Screen();
+    private static final CountingGraphics graphics = new CountingGraphics();
+    private static long time;
+
+    /**
+     * Screen is a parent view with a fixed dimension, so that the chart can be updated without a context.
+     */
+
+    private static final class Screen extends WrapperView {
+        private final float[] bounds = {0f, 0f, 1920f, 1080f, 0f};
+
+        Screen() {
+            super(new Component("SCREEN", 0.5f, 0.5f, 1f, 1f));
+        }
+
+        @Override
+        public float[] getBounds() {
+            return bounds;
+        }
+
+        @Override
+        public float getWidth() {
+            return bounds[2];
+        }
+
+        @Override
+        public float getHeight() {
+            return bounds[3];
+        }
+    }
+
+    /**
+     * Helper function. Returns the bytes allocated so far by the current thread.
+     */
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Helper function. Appends points to every distribution, then updates and draws the chart.
+     */
+
+    private static void frame(XChart chart, IngestionQueue queue) {
+        for (int i = 0; i < chart.distributions(); i++) {
+            DrawableDistribution distribution = chart.getDistribution(i);
+            for (int j = 0; j < POINTS_PER_FRAME; j++) {
+                float x = time + j / (float) POINTS_PER_FRAME;
+                float y = (float) Math.sin(0.01 * (time + j) + i);
+                if (distribution.getIngestionQueue() == queue) {
+                    queue.offer(x, y);
+                } else {
+                    distribution.add(x, y);
+                }
+            }
+        }
+        time++;
+        graphics.reset();
+        chart.update(screen);
+        chart.draw(graphics);
+    }
+
+    /**
+     * Helper function. Runs the frames and returns the bytes allocated for each frame after the warm-up.
+     */
+
+    private static double run(XChart chart, IngestionQueue queue) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame(chart, queue);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            frame(chart, queue);
+        }
+        return (double) (allocatedBytes() - before) / FRAMES;
+    }
+
+    public static void main(String[] args) {
+        if (!THREAD_BEAN.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("allocation counters aren't supported by this JVM");
+        }
+        THREAD_BEAN.setThreadAllocatedMemoryEnabled(true);
+
+        XChart chart = new XChart(new Component("CHART", 0.5f, 0.5f, 1f, 1f));
+        IngestionQueue queue = new IngestionQueue(1024);
+        for (int i = 0; i < DISTRIBUTIONS; i++) {
+            DrawableDistribution distribution = new DrawableDistribution(new RingStorage(WINDOW))
+                    .setDecimation(DrawableDistribution.DECIMATION.M4);
+            if (i == 0) {
+                distribution.setIngestionQueue(queue);
+            }
+            chart.addDistribution(distribution);
+        }
+
+        String[] names = {"all points", "zoomed", "zoomed, shared scale"};
+        double[] results = new double[names.length];
+        results[0] = run(chart, queue);
+        chart.setZoom(0.2f, 0.7f);
+        results[1] = run(chart, queue);
+        chart.enableSharedScale(true);
+        results[2] = run(chart, queue);
+
+        boolean allocates = false;
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("%-22s %.1f bytes for each frame%n", names[i], results[i]);
+            allocates |= results[i] != 0d;
+        }
+        System.out.printf("%d vertices drawn in the last frame%n", graphics.getVertices());
+        if (allocates) {
+            throw new IllegalStateException("the steady-state frames allocate");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package uiax.example;
+
+import uia.core.rendering.Graphics;
+import uia.core.rendering.Transform;
+import uia.core.rendering.color.Color;
+import uia.core.rendering.font.Font;
+import uia.core.rendering.image.Image;
+
+/**
+ * CountingGraphics is a {@link Graphics} that draws nothing and only counts the draw calls.
+ * It is used by the benchmarks to measure the rendering work without a real rendering backend.
+ */
+
+public class CountingGraphics implements Graphics {
+    private long shapes;
+    private long vertices;
+    private long images;
+
+    /**
+     * Resets the counters.
+     */
+
+    public void reset() {
+        shapes = 0;
+        vertices = 0;
+        images = 0;
+    }
+
+    /**
+     * @return the number of {@link #drawShape(Transform, int, float...)} calls since the last reset
+     */
+
+    public long getShapes() {
+        return shapes;
+    }
+
+    /**
+     * @return the number of vertices submitted with {@link #drawShape(Transform, int, float...)} since
+     * the last reset
+     */
+
+    public long getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the number of {@link #drawImage(Image, float, float, float, float, float)} calls since the last reset
+     */
+
+    public long getImages() {
+        return images;
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    public Graphics setClip(Transform transform, int vertices, float... points) {
+        return this;
+    }
+
+    @Override
+    public Graphics restoreClip() {
+        return this;
+    }
+
+    @Override
+    public Graphics setShapeColor(Color color) {
+        return this;
+    }
+
+    @Override
+    public Graphics setShapeBorderColor(Color color) {
+        return this;
+    }
+
+    @Override
+    public Graphics setShapeBorderWidth(float borderWidth) {
+        return this;
+    }
+
+    @Override
+    public Graphics drawShape(Transform transform, int vertices, float... points) {
+        this.shapes++;
+        this.vertices += vertices;
+        return this;
+    }
+
+    @Override
+    public Graphics setFont(Font font) {
+        return this;
+    }
+
+    @Override
+    public Graphics setTextColor(Color color) {
+        return this;
+    }
+
+    @Override
+    public Graphics drawText(char[] data, int offset, int length, float x, float y, float rotation) {
+        return this;
+    }
+
+    @Override
+    public Graphics drawImage(Image image, float x, float y, float width, float height, float rotation) {
+        images++;
+        return this;
+    }
+}
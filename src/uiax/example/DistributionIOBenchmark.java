@@ -0,0 +1,106 @@
+package uiax.example;
+
+import uiax.components.chart.DistributionIO;
+import uiax.components.chart.PointDistribution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Demonstrative benchmark. Writes a distribution of 5M random points as CSV and as a binary snapshot, then
+ * prints the throughput, in MB/s, of {@link DistributionIO#readCSV(Path, PointDistribution, boolean)},
+ * {@link DistributionIO#save(PointDistribution, Path)} and {@link DistributionIO#load(Path, PointDistribution)},
+ * next to a CSV reader that splits each row into Strings and appends the points one by one.
+ */
+
+public class DistributionIOBenchmark {
+    private static final int POINTS = 5_000_000;
+    private static final int RUNS = 5;
+
+    /**
+     * Task is a benchmarked operation on a file.
+     */
+
+    private interface Task {
+        void run(Path file) throws IOException;
+    }
+
+    /**
+     * Helper function. Runs the task a few times on the given file and prints the best throughput.
+     */
+
+    private static void run(String name, Path file, Task task) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            task.run(file);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double megabytes = Files.size(file) / 1e6;
+        System.out.printf("%-22s %7.1f MB in %7.1f ms: %7.1f MB/s%n", name, megabytes, best / 1e6,
+                megabytes * 1e9 / best);
+    }
+
+    /**
+     * Helper function. Reads a CSV file by splitting each row into Strings and appending the points one by one.
+     */
+
+    private static PointDistribution readCSVByRow(Path file) throws IOException {
+        PointDistribution result = new PointDistribution();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(",");
+                result.add(Float.parseFloat(values[0]), Float.parseFloat(values[1]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper function. Throws an exception if the given distributions don't hold the same points.
+     */
+
+    private static void check(PointDistribution expected, PointDistribution actual, String name) {
+        boolean equal = expected.size() == actual.size();
+        for (int i = 0; equal && i < expected.size(); i++) {
+            equal = Float.compare(expected.getX(i), actual.getX(i)) == 0
+                    && Float.compare(expected.getY(i), actual.getY(i)) == 0;
+        }
+        if (!equal) {
+            throw new IllegalStateException(name + " didn't restore the points");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(1L);
+        PointDistribution source = new PointDistribution();
+        for (int i = 0; i < POINTS; i++) {
+            source.add(i, (float) (1000d * random.nextGaussian()));
+        }
+
+        Path csv = Files.createTempFile("distribution", ".csv");
+        Path snapshot = Files.createTempFile("distribution", ".bin");
+        try {
+            DistributionIO.writeCSV(source, csv);
+            run("CSV, row by row", csv, DistributionIOBenchmark::readCSVByRow);
+            run("readCSV", csv, file -> DistributionIO.readCSV(file, new PointDistribution(), false));
+            run("save", snapshot, file -> DistributionIO.save(source, file));
+            run("load", snapshot, file -> DistributionIO.load(file, new PointDistribution()));
+
+            PointDistribution target = new PointDistribution();
+            DistributionIO.readCSV(csv, target, false);
+            check(source, target, "readCSV");
+            target.clear();
+            DistributionIO.load(snapshot, target);
+            check(source, target, "load");
+        } finally {
+            Files.delete(csv);
+            Files.delete(snapshot);
+        }
+    }
+}
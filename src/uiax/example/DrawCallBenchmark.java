@@ -0,0 +1,56 @@
+package uiax.example;
+
+import uiax.components.chart.DrawableDistribution;
+
+/**
+ * Demonstrative benchmark. Draws a distribution of 100K points, with lines and markers, on a
+ * {@link CountingGraphics} and prints the draw calls and the time required for each frame, next to the
+ * draw calls required to submit one shape for each segment and each marker of all the points.
+ */
+
+public class DrawCallBenchmark {
+    private static final int POINTS = 100_000;
+    private static final int FRAMES = 200;
+
+    /**
+     * Helper function. Draws the distribution and prints the draw calls of the last frame.
+     */
+
+    private static void run(String name, DrawableDistribution distribution) {
+        CountingGraphics graphics = new CountingGraphics();
+        float[] bounds = {0f, 0f, 1920f, 1080f, 0f};
+        for (int i = 0; i < FRAMES; i++) {
+            distribution.draw(graphics, bounds, 1900f, 1060f, 0f);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            graphics.reset();
+            distribution.draw(graphics, bounds, 1900f, 1060f, 0f);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-14s %6d draw calls, %7d vertices, %.3f ms for each frame%n",
+                name, graphics.getShapes(), graphics.getVertices(), elapsed / 1e6 / FRAMES);
+    }
+
+    /**
+     * Helper function. Creates a distribution of a sine wave.
+     */
+
+    private static DrawableDistribution create(DrawableDistribution.DECIMATION decimation) {
+        DrawableDistribution result = new DrawableDistribution()
+                .setDecimation(decimation)
+                .enableLine(true)
+                .enablePoint(true);
+        for (int i = 0; i < POINTS; i++) {
+            result.add(i, (float) Math.sin(i / 100d));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("one shape for each segment and marker: %d draw calls%n", 2 * POINTS - 1);
+        run("no decimation", create(DrawableDistribution.DECIMATION.NONE));
+        run("M4", create(DrawableDistribution.DECIMATION.M4));
+        run("LTTB", create(DrawableDistribution.DECIMATION.LTTB));
+    }
+}
@@ -0,0 +1,55 @@
+package uiax.example;
+
+import uiax.components.chart.PointDistribution;
+
+import java.util.Random;
+
+/**
+ * Demonstrative benchmark. Looks up the points of a distribution of 1M random points, first with a linear scan,
+ * then with the hash index (see {@link PointDistribution#enableHashIndex(boolean)}), and checks that both
+ * lookups find the same indices.
+ */
+
+public class HashIndexBenchmark {
+    private static final int POINTS = 1_000_000;
+    private static final int SCAN_LOOKUPS = 500;
+    private static final int HASH_LOOKUPS = 5_000_000;
+
+    /**
+     * Helper function. Looks up random points of the distribution.
+     *
+     * @return the time required, in nanoseconds, for each lookup
+     */
+
+    private static double run(PointDistribution distribution, int lookups, long seed) {
+        Random random = new Random(seed);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int index = random.nextInt(POINTS);
+            checksum += distribution.indexOf(distribution.getX(index), distribution.getY(index)) - index;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum != 0) {
+            throw new IllegalStateException("a lookup found the wrong point");
+        }
+        return (double) elapsed / lookups;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(1L);
+        PointDistribution distribution = new PointDistribution();
+        for (int i = 0; i < POINTS; i++) {
+            distribution.add(random.nextFloat(), random.nextFloat());
+        }
+
+        run(distribution, SCAN_LOOKUPS / 10, 2L);
+        System.out.printf("linear scan: %12.1f ns for each lookup%n", run(distribution, SCAN_LOOKUPS, 3L));
+
+        long start = System.nanoTime();
+        distribution.enableHashIndex(true);
+        System.out.printf("hash index built in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        run(distribution, HASH_LOOKUPS / 10, 2L);
+        System.out.printf("hash index:  %12.1f ns for each lookup%n", run(distribution, HASH_LOOKUPS, 3L));
+    }
+}
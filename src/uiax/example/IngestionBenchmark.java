@@ -0,0 +1,82 @@
+package uiax.example;
+
+import uiax.components.chart.IngestionQueue;
+import uiax.components.chart.PointDistribution;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Demonstrative stress test. Four producer threads offer 5M points each to an {@link IngestionQueue}, while
+ * the main thread drains it into a distribution, like a render thread would do at each update.
+ * When the queue is full, producers yield and offer the point again.
+ * It prints the throughput and the accepted and rejected counters, and it fails if any point is lost,
+ * counted twice or if the rejected points don't match the failed offers.
+ */
+
+public class IngestionBenchmark {
+    private static final int PRODUCERS = 4;
+    private static final int POINTS = 5_000_000;
+    private static final int CAPACITY = 1 << 16;
+
+    public static void main(String[] args) {
+        IngestionQueue queue = new IngestionQueue(CAPACITY);
+        AtomicLongArray rejectedByProducer = new AtomicLongArray(PRODUCERS);
+        long[] drainedByProducer = new long[PRODUCERS];
+
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                long rejected = 0;
+                for (int i = 0; i < POINTS; i++) {
+                    // the y-value tells the consumer which producer sent the point
+                    while (!queue.offer(i, producer)) {
+                        // backpressure: the queue is full, so the producer waits for the consumer
+                        rejected++;
+                        Thread.yield();
+                    }
+                }
+                rejectedByProducer.set(producer, rejected);
+            });
+        }
+
+        PointDistribution distribution = new PointDistribution();
+        long drained = 0;
+        long start = System.nanoTime();
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread producer : producers) {
+                running |= producer.isAlive();
+            }
+            // the last drain runs after all producers have finished
+            drained += queue.drainTo(distribution);
+            for (int i = 0; i < distribution.size(); i++) {
+                drainedByProducer[(int) distribution.getY(i)]++;
+            }
+            distribution.clear();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long points = (long) PRODUCERS * POINTS;
+        long rejected = 0;
+        for (int p = 0; p < PRODUCERS; p++) {
+            rejected += rejectedByProducer.get(p);
+        }
+        System.out.printf("%d points from %d threads in %.1f ms: %.1fM points/s%n",
+                points, PRODUCERS, elapsed / 1e6, points * 1e3 / elapsed);
+        System.out.printf("accepted %d, rejected %d, drained %d%n", queue.accepted(), queue.rejected(), drained);
+
+        if (queue.accepted() != points || drained != points || queue.rejected() != rejected) {
+            throw new IllegalStateException("the counters don't match the offered points");
+        }
+        for (int p = 0; p < PRODUCERS; p++) {
+            if (drainedByProducer[p] != POINTS) {
+                throw new IllegalStateException("producer " + p + ": " + drainedByProducer[p] + " drained points");
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package uiax.example;
+
+import uiax.components.chart.PointDistribution;
+import uiax.components.chart.RingStorage;
+
+import java.util.Random;
+
+/**
+ * Demonstrative benchmark. Appends 10M points to a distribution and reads its statistics after each append,
+ * first with all the points retained, then with a sliding window. For the sliding window, it also compares the
+ * streamed standard deviation with the one summed again from the window.
+ */
+
+public class StatisticsBenchmark {
+    private static final int POINTS = 10_000_000;
+    private static final int WINDOW = 10_000;
+
+    /**
+     * Helper function. Appends the points and reads the statistics after each append.
+     *
+     * @return the time required, in nanoseconds, for each point
+     */
+
+    private static double run(PointDistribution distribution, long seed) {
+        Random random = new Random(seed);
+        double checksum = 0d;
+        long start = System.nanoTime();
+        for (int i = 0; i < POINTS; i++) {
+            distribution.add(i, (float) (1000d + random.nextGaussian()));
+            checksum += distribution.getMin(PointDistribution.AXIS.Y)
+                    + distribution.getMax(PointDistribution.AXIS.Y)
+                    + distribution.getMean(PointDistribution.AXIS.Y)
+                    + distribution.getStandardDeviation(PointDistribution.AXIS.Y);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (Double.isNaN(checksum)) {
+            System.out.println("unexpected checksum");
+        }
+        return (double) elapsed / POINTS;
+    }
+
+    /**
+     * Helper function. Calculates the standard deviation of the y-values with the two-pass algorithm.
+     */
+
+    private static double standardDeviation(PointDistribution distribution) {
+        int size = distribution.size();
+        double mean = 0d;
+        for (int i = 0; i < size; i++) {
+            mean += distribution.getY(i);
+        }
+        mean /= size;
+        double m2 = 0d;
+        for (int i = 0; i < size; i++) {
+            double delta = distribution.getY(i) - mean;
+            m2 += delta * delta;
+        }
+        return Math.sqrt(m2 / (size + 1));
+    }
+
+    public static void main(String[] args) {
+        PointDistribution all = new PointDistribution();
+        System.out.printf("all points:     %.1f ns for each append and read%n", run(all, 1L));
+
+        PointDistribution window = new PointDistribution(new RingStorage(WINDOW));
+        System.out.printf("sliding window: %.1f ns for each append and read%n", run(window, 1L));
+
+        double expected = standardDeviation(window);
+        double streamed = window.getStandardDeviation(PointDistribution.AXIS.Y);
+        System.out.printf("sliding window standard deviation: streamed %.6f, summed again %.6f%n",
+                streamed, expected);
+    }
+}